@@ -2,16 +2,13 @@ package com.pkmunla.asus.homedashboard.Activity;
 
 import android.content.Intent;
 import android.graphics.Bitmap;
-import android.graphics.drawable.BitmapDrawable;
-import android.graphics.drawable.Drawable;
 import android.os.Bundle;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ImageView;
 import android.widget.SearchView;
-import android.widget.TextView;
+import android.widget.Toast;
 
 import androidx.appcompat.app.ActionBar;
 import androidx.appcompat.app.AppCompatActivity;
@@ -19,22 +16,26 @@ import androidx.core.view.MenuItemCompat;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.firebase.ui.database.FirebaseRecyclerAdapter;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.Query;
+import com.pkmunla.asus.homedashboard.Data.DataRepository;
+import com.pkmunla.asus.homedashboard.Data.PagedSource;
 import com.pkmunla.asus.homedashboard.DetailsActivity.HomeDetailsActivity;
+import com.pkmunla.asus.homedashboard.Holder.ModelAdapter;
 import com.pkmunla.asus.homedashboard.Holder.ViewHolder;
+import com.pkmunla.asus.homedashboard.Image.ImagePrefetcher;
+import com.pkmunla.asus.homedashboard.Image.ImageStore;
 import com.pkmunla.asus.homedashboard.Model.Model;
 import com.pkmunla.asus.homedashboard.R;
-
-import java.io.ByteArrayOutputStream;
+import com.pkmunla.asus.homedashboard.Search.SearchController;
 
 public class HomeActivity extends AppCompatActivity {
 
     RecyclerView mRecyclerView;
-    FirebaseDatabase mFirebaseDatabase;
-    DatabaseReference mRef;
+    DataRepository mDataRepository;
+    ModelAdapter mModelAdapter;
+    SearchController mSearchController;
+    PagedSource mPagedSource;
+    ImagePrefetcher mImagePrefetcher;
+    boolean mPaged;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -54,56 +55,45 @@ public class HomeActivity extends AppCompatActivity {
         //set layout as linearlayout
         mRecyclerView.setLayoutManager(new LinearLayoutManager(this));
 
-        //send query to firebasedatabase
-        mFirebaseDatabase = FirebaseDatabase.getInstance();
-        mRef = mFirebaseDatabase.getReference("Data");
-    }
+        //data from firebase, shared with the other screens
+        mDataRepository = DataRepository.get(this);
+        mPaged = PagedSource.isEnabled(this);
 
-    //search data
-    private void firebaseSearch(String searchText){
-        Query firebaseSearchQuery = mRef.orderByChild("title").startAt(searchText).endAt(searchText+"\uf8ff");
-
-        FirebaseRecyclerAdapter<Model, ViewHolder> firebaseRecyclerAdapter =
-                new FirebaseRecyclerAdapter<Model, ViewHolder>(
-                        Model.class,
-                        R.layout.row,
-                        ViewHolder.class,
-                        mRef
-                ) {
+        //rows come from the shared repository, local copy first
+        mModelAdapter =
+                new ModelAdapter(R.layout.row){
                     @Override
-                    protected void populateViewHolder(ViewHolder viewHolder, Model model, int position) {
-                        viewHolder.setDetails(getApplicationContext(), model.getTitle(), model.getImage(), model.getLocation(), model.getDescription(), model.getUstad(), model.getMasjid());
+                    protected void populateViewHolder(ViewHolder viewHolder, Model model, int position){
+                        viewHolder.setDetails(getApplicationContext(), model.getTitle(), model.getImage(), model.getLocation(), model.getDescription(), model.getUstad(), model.getMasjid(), model.getPlaceholder());
                     }
+
                     @Override
                     public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
-                        ViewHolder viewHolder =  super.onCreateViewHolder(parent, viewType);
+                        final ViewHolder viewHolder =  super.onCreateViewHolder(parent, viewType);
                         viewHolder.setOnClickListener(new ViewHolder.ClickListener() {
                             @Override
                             public void onItemClick(View view, int position) {
-                                //view
-                                TextView mTitleTv = view.findViewById(R.id.rTitleTV);
-                                TextView mDescTV = view.findViewById(R.id.rDescriptionTV);
-                                TextView mUstadTV = view.findViewById(R.id.rUstadzTV);
-                                TextView mLocationTv = view.findViewById(R.id.rLocationTV);
-                                ImageView mImageTv = view.findViewById(R.id.rImageView);
-                                //get data from view
-                                String mTitle = mTitleTv.getText().toString();
-                                String mDesc = mDescTV.getText().toString();
-                                String mUstad = mUstadTV.getText().toString();
-                                String mLocation = mLocationTv.getText().toString();
-                                Drawable mDrawable = mImageTv.getDrawable();
-                                Bitmap mBitmap = ((BitmapDrawable)mDrawable).getBitmap();
+                                if (position == RecyclerView.NO_POSITION) {
+                                    return;
+                                }
+                                //the row's data is in the adapter already, nothing is read back from the views
+                                Model model = mModelAdapter.getItem(position);
+
+                                //the bitmap stays in memory, only its url goes in the Intent;
+                                //while the image loads the view shows the blurred placeholder, which must not be handed over
+                                Bitmap bitmap = viewHolder.getImageBitmap();
+                                if (bitmap != null) {
+                                    ImageStore.put(model.getImage(), bitmap);
+                                }
 
                                 //pass this data to new Intent
                                 Intent intent = new Intent(view.getContext(), HomeDetailsActivity.class);
-                                ByteArrayOutputStream stream = new ByteArrayOutputStream();
-                                mBitmap.compress(Bitmap.CompressFormat.PNG, 50, stream);
-                                byte[] bytes = stream.toByteArray();
-                                intent.putExtra("title", mTitle);
-                                intent.putExtra("description", mDesc);
-                                intent.putExtra("ustad", mUstad);
-                                intent.putExtra("location", mLocation);
-                                intent.putExtra("image", bytes);
+                                intent.putExtra("title", model.getTitle());
+                                intent.putExtra("description", model.getDescription());
+                                intent.putExtra("ustad", model.getUstad());
+                                intent.putExtra("location", model.getLocation());
+                                intent.putExtra("masjid", model.getMasjid());
+                                intent.putExtra("image", model.getImage());
                                 startActivity(intent);
                             }
 
@@ -116,8 +106,14 @@ public class HomeActivity extends AppCompatActivity {
                     }
 
                 };
-        //set adapter to recyclerview
-        mRecyclerView.setAdapter(firebaseRecyclerAdapter);
+
+        mRecyclerView.setAdapter(mModelAdapter);
+        mImagePrefetcher = new ImagePrefetcher(mModelAdapter);
+        mRecyclerView.addOnScrollListener(mImagePrefetcher);
+        mSearchController = new SearchController(mDataRepository, mModelAdapter, SearchController.ALL_FIELDS);
+        if (mPaged) {
+            mPagedSource = new PagedSource(mDataRepository.getReference(), mRecyclerView, mModelAdapter, PagedSource.Config.DEFAULT);
+        }
     }
 
     @Override
@@ -125,18 +121,22 @@ public class HomeActivity extends AppCompatActivity {
         //inflate the menu; this adds item to action bar if it prsent
         getMenuInflater().inflate(R.menu.menu, menu);
         MenuItem item = menu.findItem(R.id.action_search);
+        //search runs on the indexes of the whole list, the paged list only holds a few pages,
+        //so search is hidden while paging is on
+        item.setVisible(!mPaged);
+        menu.findItem(R.id.paged_list).setChecked(mPaged);
         SearchView searchView = (SearchView) MenuItemCompat.getActionView(item);
         searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
             @Override
             public boolean onQueryTextSubmit(String query) {
-                firebaseSearch(query);
+                mSearchController.submit(query);
                 return false;
             }
 
             @Override
             public boolean onQueryTextChange(String newText) {
                 //filter as you type
-                firebaseSearch(newText);
+                mSearchController.setQuery(newText);
                 return false;
             }
         });
@@ -151,6 +151,15 @@ public class HomeActivity extends AppCompatActivity {
         if (id==R.id.setting){
             return true;
         }
+        else if (id == R.id.paged_list){
+            //switch between the whole list and the paged list
+            PagedSource.setEnabled(this, !mPaged);
+            if (!mPaged) {
+                Toast.makeText(this, "Search is not available in the paged list", Toast.LENGTH_SHORT).show();
+            }
+            recreate();
+            return true;
+        }
         else if (id == R.id.account){
             Intent intentku = new Intent(HomeActivity.this, ProfileActivity.class);
             startActivity(intentku);
@@ -163,65 +172,23 @@ public class HomeActivity extends AppCompatActivity {
     protected void onStart() {
         super.onStart();
 
-        FirebaseRecyclerAdapter<Model, ViewHolder> firebaseRecyclerAdapter =
-                new FirebaseRecyclerAdapter<Model, ViewHolder>(
-                        Model.class,
-                        R.layout.row,
-                        ViewHolder.class,
-                        mRef
-                ){
-                    @Override
-                    protected void populateViewHolder(ViewHolder viewHolder, Model model, int position){
-                        viewHolder.setDetails(getApplicationContext(), model.getTitle(), model.getImage(), model.getLocation(), model.getDescription(), model.getUstad(), model.getMasjid());
-                    }
-
-                    @Override
-                    public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
-                        ViewHolder viewHolder =  super.onCreateViewHolder(parent, viewType);
-                        viewHolder.setOnClickListener(new ViewHolder.ClickListener() {
-                            @Override
-                            public void onItemClick(View view, int position) {
-                                //view
-                                TextView mTitleTv = view.findViewById(R.id.rTitleTV);
-                                TextView mDescTV = view.findViewById(R.id.rDescriptionTV);
-                                TextView mUstadTV = view.findViewById(R.id.rUstadzTV);
-                                TextView mLocationTv = view.findViewById(R.id.rLocationTV);
-                                TextView mMasjidTv = view.findViewById(R.id.rMasjidTV);
-                                ImageView mImageTv = view.findViewById(R.id.rImageView);
-                                //get data from view
-                                String mTitle = mTitleTv.getText().toString();
-                                String mDesc = mDescTV.getText().toString();
-                                String mUstad = mUstadTV.getText().toString();
-                                String mLocation = mLocationTv.getText().toString();
-                                String mMasjid = mMasjidTv.getText().toString();
-                                Drawable mDrawable = mImageTv.getDrawable();
-                                Bitmap mBitmap = ((BitmapDrawable)mDrawable).getBitmap();
-
-                                //pass this data to new Intent
-                                Intent intent = new Intent(view.getContext(), HomeDetailsActivity.class);
-                                ByteArrayOutputStream stream = new ByteArrayOutputStream();
-                                mBitmap.compress(Bitmap.CompressFormat.PNG, 50, stream);
-                                byte[] bytes = stream.toByteArray();
-                                intent.putExtra("title", mTitle);
-                                intent.putExtra("description", mDesc);
-                                intent.putExtra("ustad", mUstad);
-                                intent.putExtra("location", mLocation);
-                                intent.putExtra("masjid", mMasjid);
-                                intent.putExtra("image", bytes);
-                                startActivity(intent);
-                            }
-
-                            @Override
-                            public void onItemLongClick(View view, int position) {
-
-                            }
-                        });
-                        return viewHolder;
-                    }
-
-                };
-
-        mRecyclerView.setAdapter(firebaseRecyclerAdapter);
+        //the adapter keeps its rows and search filter while stopped; only the data source comes and goes
+        if (mPaged) {
+            mPagedSource.start();
+        } else {
+            mDataRepository.subscribe(mModelAdapter);
+        }
+    }
 
+    @Override
+    protected void onStop() {
+        super.onStop();
+        mSearchController.cancel();
+        mImagePrefetcher.cancel();
+        if (mPaged) {
+            mPagedSource.stop();
+        } else {
+            mDataRepository.unsubscribe(mModelAdapter);
+        }
     }
 }
@@ -19,19 +19,47 @@ package android.media;
 import android.content.ContentResolver;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
 import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.Matrix;
+import android.graphics.Paint;
 import android.graphics.Rect;
 import android.media.MediaMetadataRetriever;
 import android.media.MediaFile.MediaFileType;
 import android.net.Uri;
+import android.os.Build;
 import android.os.ParcelFileDescriptor;
+import android.os.Process;
+import android.os.SystemClock;
 import android.provider.MediaStore.Images;
 import android.util.Log;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Thumbnail generation routines for media provider.
@@ -67,6 +95,48 @@ public class ThumbnailUtils {
      */
     public static final int TARGET_SIZE_MICRO_THUMBNAIL = 96;
 
+    /* Bitmaps handed back to the decoder, enough for a few full size mini thumbnails. */
+    private static final BitmapPool sBitmapPool = new BitmapPool(4 * MAX_NUM_PIXELS_THUMBNAIL * 4);
+
+    /* Scratch objects for extractThumbnail(), one set per thread. */
+    private static final ThreadLocal<Thumbnailer> sThumbnailer = new ThreadLocal<Thumbnailer>() {
+        @Override
+        protected Thumbnailer initialValue() {
+            return new Thumbnailer();
+        }
+    };
+
+    /* Retrievers kept open between videos, one per core is enough for createThumbnails(). */
+    private static final RetrieverPool sRetrieverPool =
+            new RetrieverPool(Runtime.getRuntime().availableProcessors());
+
+    /* Thumbnails kept on disk across runs, null until setDiskCache() is called. */
+    private static volatile DiskCache sDiskCache;
+
+    /**
+     * Keeps image thumbnails in {@code dir} so repeat requests for an unchanged file
+     * are served from one small read instead of decoding the file again. Pass null to
+     * turn the cache off.
+     *
+     * @param dir directory owned by the cache
+     * @param maxBytes size of the cache, least recently used thumbnails go first
+     *
+     * @hide Only used by media framework and media provider internally.
+     */
+    public static void setDiskCache(File dir, long maxBytes) {
+        sDiskCache = dir == null ? null : new DiskCache(dir, maxBytes);
+    }
+
+    /**
+     * Returns the hit rate and size of the disk cache, or null when there is none.
+     *
+     * @hide Only used by media framework and media provider internally.
+     */
+    public static String getDiskCacheStats() {
+        DiskCache cache = sDiskCache;
+        return cache == null ? null : cache.stats();
+    }
+
     /**
      * This method first examines if the thumbnail embedded in EXIF is bigger than our target
      * size. If not, then it'll create a thumbnail from original image. Due to efficiency
@@ -82,6 +152,40 @@ public class ThumbnailUtils {
      * @hide This method is only used by media framework and media provider internally.
      */
     public static Bitmap createImageThumbnail(String filePath, int kind) {
+        return createImageThumbnail(filePath, kind, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * Same as {@link #createImageThumbnail(String, int)}, but an opaque thumbnail is
+     * returned in {@code config}. {@link Bitmap.Config#RGB_565} takes half the memory of
+     * ARGB_8888 and JPEG files are decoded in it directly. {@link Bitmap.Config#HARDWARE}
+     * keeps the pixels in graphics memory only; such a bitmap can be drawn but not
+     * modified. Thumbnails with an alpha channel stay ARGB_8888.
+     *
+     * @param filePath the path of image file
+     * @param kind could be MINI_KIND or MICRO_KIND
+     * @param config pixel format for opaque thumbnails
+     * @return Bitmap, or null on failures
+     *
+     * @hide This method is only used by media framework and media provider internally.
+     */
+    public static Bitmap createImageThumbnail(String filePath, int kind, Bitmap.Config config) {
+        DiskCache cache = sDiskCache;
+        if (cache == null) {
+            return decodeImageThumbnail(filePath, kind, config);
+        }
+        File file = new File(filePath);
+        Bitmap bitmap = cache.get(file, kind, config);
+        if (bitmap == null) {
+            bitmap = decodeImageThumbnail(filePath, kind, config);
+            if (bitmap != null) {
+                cache.put(file, kind, config, bitmap);
+            }
+        }
+        return bitmap;
+    }
+
+    private static Bitmap decodeImageThumbnail(String filePath, int kind, Bitmap.Config config) {
         boolean wantMini = (kind == Images.Thumbnails.MINI_KIND);
         int targetSize = wantMini
                 ? TARGET_SIZE_MINI_THUMBNAIL
@@ -93,8 +197,14 @@ public class ThumbnailUtils {
         Bitmap bitmap = null;
         MediaFileType fileType = MediaFile.getFileType(filePath);
         if (fileType != null && fileType.fileType == MediaFile.FILE_TYPE_JPEG) {
-            createThumbnailFromEXIF(filePath, targetSize, maxPixels, sizedThumbnailBitmap);
-            bitmap = sizedThumbnailBitmap.mBitmap;
+            ExifThumbnail exif = ExifThumbnail.scan(filePath);
+            if (exif == null) {
+                // Not a layout the scanner knows, let ExifInterface have a go.
+                createThumbnailFromEXIF(filePath, targetSize, maxPixels, sizedThumbnailBitmap);
+                bitmap = sizedThumbnailBitmap.mBitmap;
+            } else {
+                bitmap = exif.decode(filePath, targetSize, maxPixels);
+            }
         }
 
         if (bitmap == null) {
@@ -115,8 +225,21 @@ public class ThumbnailUtils {
                 options.inJustDecodeBounds = false;
 
                 options.inDither = false;
-                options.inPreferredConfig = Bitmap.Config.ARGB_8888;
-                bitmap = BitmapFactory.decodeFileDescriptor(fd, null, options);
+                // JPEG has no alpha, so it can be decoded in 565 without a copy afterwards.
+                options.inPreferredConfig = config == Bitmap.Config.RGB_565
+                        && "image/jpeg".equals(options.outMimeType)
+                        ? Bitmap.Config.RGB_565
+                        : Bitmap.Config.ARGB_8888;
+                if (kind == Images.Thumbnails.MICRO_KIND) {
+                    bitmap = decodeCenterSquare(fd, options, targetSize, maxPixels);
+                    if (bitmap == null) {
+                        // The region decoder moved the shared file offset.
+                        stream.getChannel().position(0);
+                    }
+                }
+                if (bitmap == null) {
+                    bitmap = decodePooled(fd, options);
+                }
             } catch (IOException ex) {
                 Log.e(TAG, "", ex);
             } catch (OutOfMemoryError oom) {
@@ -139,7 +262,7 @@ public class ThumbnailUtils {
                     TARGET_SIZE_MICRO_THUMBNAIL,
                     TARGET_SIZE_MICRO_THUMBNAIL, OPTIONS_RECYCLE_INPUT);
         }
-        return bitmap;
+        return convertOpaque(bitmap, config);
     }
 
     /**
@@ -150,21 +273,42 @@ public class ThumbnailUtils {
      * @param kind could be MINI_KIND or MICRO_KIND
      */
     public static Bitmap createVideoThumbnail(String filePath, int kind) {
+        return createVideoThumbnail(filePath, kind, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * Same as {@link #createVideoThumbnail(String, int)}, but the thumbnail is returned
+     * in {@code config}, see {@link #createImageThumbnail(String, int, Bitmap.Config)}.
+     *
+     * @hide Only used by media framework and media provider internally.
+     */
+    public static Bitmap createVideoThumbnail(String filePath, int kind, Bitmap.Config config) {
+        return createVideoThumbnail(filePath, kind, config, 0);
+    }
+
+    /**
+     * @param deadline uptime after which no frame is fetched any more, 0 for none
+     */
+    private static Bitmap createVideoThumbnail(String filePath, int kind, Bitmap.Config config,
+            long deadline) {
         Bitmap bitmap = null;
-        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        MediaMetadataRetriever retriever = sRetrieverPool.acquire();
+        boolean reusable = false;
         try {
             retriever.setDataSource(filePath);
-            bitmap = retriever.getFrameAtTime(-1);
+            if (deadline != 0 && SystemClock.uptimeMillis() > deadline) {
+                Log.w(TAG, "Time budget spent opening " + filePath);
+            } else {
+                bitmap = getFrame(retriever, kind);
+                reusable = true;
+            }
         } catch (IllegalArgumentException ex) {
             // Assume this is a corrupt video file
         } catch (RuntimeException ex) {
             // Assume this is a corrupt video file.
         } finally {
-            try {
-                retriever.release();
-            } catch (RuntimeException ex) {
-                // Ignore failures while cleaning up.
-            }
+            // A retriever that failed or ran late is not trusted with the next file.
+            sRetrieverPool.release(retriever, reusable);
         }
 
         if (bitmap == null) return null;
@@ -186,7 +330,297 @@ public class ThumbnailUtils {
                     TARGET_SIZE_MICRO_THUMBNAIL,
                     OPTIONS_RECYCLE_INPUT);
         }
-        return bitmap;
+        return convertOpaque(bitmap, config);
+    }
+
+    /**
+     * Returns a frame already scaled close to what {@code kind} keeps: the long side
+     * at most 512 for MINI_KIND, the short side at least 96 for MICRO_KIND. Before
+     * O_MR1 the frame comes at full size and is scaled by the caller.
+     */
+    private static Bitmap getFrame(MediaMetadataRetriever retriever, int kind) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+            int width = parseInt(retriever.extractMetadata(
+                    MediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH));
+            int height = parseInt(retriever.extractMetadata(
+                    MediaMetadataRetriever.METADATA_KEY_VIDEO_HEIGHT));
+            if (width > 0 && height > 0) {
+                int max = Math.max(width, height);
+                int min = Math.min(width, height);
+                // A square box, so a rotated frame fits the same way.
+                int box = kind == Images.Thumbnails.MICRO_KIND
+                        ? (TARGET_SIZE_MICRO_THUMBNAIL * max + min - 1) / min
+                        : 512;
+                if (max > box) {
+                    return retriever.getScaledFrameAtTime(-1,
+                            MediaMetadataRetriever.OPTION_CLOSEST_SYNC, box, box);
+                }
+            }
+        }
+        return retriever.getFrameAtTime(-1);
+    }
+
+    private static int parseInt(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the created and reused counts of the video retriever pool.
+     *
+     * @hide Only used by media framework and media provider internally.
+     */
+    public static String getRetrieverPoolStats() {
+        return sRetrieverPool.stats();
+    }
+
+    /**
+     * MediaMetadataRetrievers handed from one video to the next instead of being
+     * created and released for every file.
+     */
+    private static class RetrieverPool {
+        private final ArrayDeque<MediaMetadataRetriever> mIdle =
+                new ArrayDeque<MediaMetadataRetriever>();
+        private final int mMaxIdle;
+        private int mCreated;
+        private int mReused;
+
+        RetrieverPool(int maxIdle) {
+            mMaxIdle = maxIdle;
+        }
+
+        synchronized MediaMetadataRetriever acquire() {
+            MediaMetadataRetriever retriever = mIdle.poll();
+            if (retriever == null) {
+                mCreated++;
+                return new MediaMetadataRetriever();
+            }
+            mReused++;
+            return retriever;
+        }
+
+        void release(MediaMetadataRetriever retriever, boolean reusable) {
+            if (reusable) {
+                synchronized (this) {
+                    if (mIdle.size() < mMaxIdle) {
+                        mIdle.add(retriever);
+                        return;
+                    }
+                }
+            }
+            try {
+                retriever.release();
+            } catch (RuntimeException ex) {
+                // Ignore failures while cleaning up.
+            }
+        }
+
+        synchronized String stats() {
+            return "created=" + mCreated + " reused=" + mReused + " idle=" + mIdle.size();
+        }
+    }
+
+    /**
+     * Copies an opaque thumbnail to {@code config} and gives the original back to the
+     * pool. ARGB_8888, the default, and thumbnails with alpha are returned unchanged.
+     */
+    private static Bitmap convertOpaque(Bitmap bitmap, Bitmap.Config config) {
+        if (bitmap == null || config == Bitmap.Config.ARGB_8888
+                || bitmap.getConfig() == config || bitmap.hasAlpha()) {
+            return bitmap;
+        }
+        Bitmap converted = bitmap.copy(config, false);
+        if (converted == null) {
+            return bitmap;
+        }
+        recycleThumbnail(bitmap);
+        return converted;
+    }
+
+    /**
+     * Receives the thumbnails of a batch as they complete, on the decoding threads.
+     *
+     * @hide Only used by media framework and media provider internally.
+     */
+    public interface BatchCallback {
+        /**
+         * Called once per file, in completion order.
+         *
+         * @param bitmap the thumbnail, or null when the file could not be decoded
+         */
+        void onThumbnail(String filePath, Bitmap bitmap);
+
+        /**
+         * Called once after the last thumbnail, or after {@link Batch#cancel()}.
+         */
+        void onFinished(boolean cancelled);
+    }
+
+    /**
+     * A running batch started by {@link #createThumbnails}.
+     *
+     * @hide Only used by media framework and media provider internally.
+     */
+    public static class Batch {
+        private final ThreadPoolExecutor mExecutor;
+        private final BatchCallback mCallback;
+        private final AtomicBoolean mCancelled = new AtomicBoolean();
+        private final AtomicInteger mRemaining;
+        private long mBudgetMillis;
+
+        private Batch(int threads, int files, BatchCallback callback) {
+            mExecutor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), sThreadFactory);
+            mCallback = callback;
+            mRemaining = new AtomicInteger(files);
+        }
+
+        /**
+         * Drops the files not started yet. Decodes already running finish, but their
+         * thumbnails are not delivered.
+         */
+        public void cancel() {
+            if (mCancelled.getAndSet(true)) {
+                return;
+            }
+            List<Runnable> dropped = mExecutor.shutdownNow();
+            finish(dropped.size());
+        }
+
+        public boolean isCancelled() {
+            return mCancelled.get();
+        }
+
+        private void run(final String filePath, final int kind, final Bitmap.Config config) {
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (!mCancelled.get()) {
+                            long deadline = mBudgetMillis == 0
+                                    ? 0 : SystemClock.uptimeMillis() + mBudgetMillis;
+                            Bitmap bitmap = createThumbnail(filePath, kind, config, deadline);
+                            if (mCancelled.get()) {
+                                recycleThumbnail(bitmap);
+                            } else {
+                                mCallback.onThumbnail(filePath, bitmap);
+                            }
+                        }
+                    } finally {
+                        finish(1);
+                    }
+                }
+            });
+        }
+
+        private void finish(int files) {
+            if (files > 0 && mRemaining.addAndGet(-files) == 0) {
+                mExecutor.shutdown();
+                mCallback.onFinished(mCancelled.get());
+            }
+        }
+    }
+
+    private static final ThreadFactory sThreadFactory = new ThreadFactory() {
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    r.run();
+                }
+            }, "ThumbnailUtils #" + mCount.incrementAndGet());
+        }
+    };
+
+    /**
+     * Creates the thumbnails of {@code filePaths} in parallel, see
+     * {@link #createThumbnails(List, int, Bitmap.Config, int, BatchCallback)}.
+     *
+     * @hide Only used by media framework and media provider internally.
+     */
+    public static Batch createThumbnails(List<String> filePaths, int kind,
+            BatchCallback callback) {
+        return createThumbnails(filePaths, kind, Bitmap.Config.ARGB_8888,
+                Runtime.getRuntime().availableProcessors(), callback);
+    }
+
+    /**
+     * Creates the thumbnails of image and video files in parallel and hands each
+     * one to {@code callback} as soon as it is done.
+     *
+     * At most {@code threads} files are decoded at once, and fewer when that many
+     * decodes of the largest bitmap {@code kind} allows would not fit in a quarter
+     * of the heap.
+     *
+     * @param filePaths the image or video files
+     * @param kind could be MINI_KIND or MICRO_KIND
+     * @param config pixel format for opaque thumbnails
+     * @param threads the most files decoded at once
+     * @param callback receives the thumbnails
+     * @return the batch, to cancel it
+     *
+     * @hide Only used by media framework and media provider internally.
+     */
+    public static Batch createThumbnails(List<String> filePaths, int kind,
+            Bitmap.Config config, int threads, BatchCallback callback) {
+        return createThumbnails(filePaths, kind, config, threads, 0, callback);
+    }
+
+    /**
+     * Same as {@link #createThumbnails(List, int, Bitmap.Config, int, BatchCallback)},
+     * with a time budget per video. A video still opening when its budget runs out
+     * is reported with a null thumbnail instead of holding up its thread for the
+     * frame as well.
+     *
+     * @param budgetMillis time each video may take, 0 for no limit
+     *
+     * @hide Only used by media framework and media provider internally.
+     */
+    public static Batch createThumbnails(List<String> filePaths, int kind,
+            Bitmap.Config config, int threads, long budgetMillis, BatchCallback callback) {
+        Batch batch = new Batch(Math.max(1, Math.min(threads, maxParallelDecodes(kind))),
+                filePaths.size(), callback);
+        batch.mBudgetMillis = budgetMillis;
+        if (filePaths.isEmpty()) {
+            callback.onFinished(false);
+            return batch;
+        }
+        for (String filePath : filePaths) {
+            batch.run(filePath, kind, config);
+        }
+        return batch;
+    }
+
+    /**
+     * Returns how many decodes fit in the memory budget. A decode holds at most the
+     * sampled bitmap, up to maxPixels, and the thumbnail cut from it.
+     */
+    private static int maxParallelDecodes(int kind) {
+        int maxPixels = kind == Images.Thumbnails.MINI_KIND
+                ? MAX_NUM_PIXELS_THUMBNAIL
+                : MAX_NUM_PIXELS_MICRO_THUMBNAIL;
+        long budget = Runtime.getRuntime().maxMemory() / 4;
+        long perDecode = 2L * maxPixels * 4;
+        return (int) Math.max(1, Math.min(budget / perDecode, Integer.MAX_VALUE));
+    }
+
+    private static Bitmap createThumbnail(String filePath, int kind, Bitmap.Config config,
+            long deadline) {
+        MediaFileType fileType = MediaFile.getFileType(filePath);
+        if (fileType != null && MediaFile.isVideoFileType(fileType.fileType)) {
+            return createVideoThumbnail(filePath, kind, config, deadline);
+        }
+        return createImageThumbnail(filePath, kind, config);
     }
 
     /**
@@ -215,19 +649,760 @@ public class ThumbnailUtils {
             return null;
         }
 
-        float scale;
-        if (source.getWidth() < source.getHeight()) {
-            scale = width / (float) source.getWidth();
+        Bitmap thumbnail;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+                && source.getConfig() == Bitmap.Config.HARDWARE) {
+            // A hardware bitmap cannot be drawn into a software canvas.
+            float scale;
+            if (source.getWidth() < source.getHeight()) {
+                scale = width / (float) source.getWidth();
+            } else {
+                scale = height / (float) source.getHeight();
+            }
+            Matrix matrix = new Matrix();
+            matrix.setScale(scale, scale);
+            thumbnail = transform(matrix, source, width, height,
+                    OPTIONS_SCALE_UP | (options & ~OPTIONS_RECYCLE_INPUT));
         } else {
-            scale = height / (float) source.getHeight();
+            thumbnail = sThumbnailer.get().extract(source, width, height);
+        }
+        if ((options & OPTIONS_RECYCLE_INPUT) != 0 && thumbnail != source) {
+            // Give the input to the pool instead of recycling it, the next decode reuses it.
+            recycleThumbnail(source);
         }
-        Matrix matrix = new Matrix();
-        matrix.setScale(scale, scale);
-        Bitmap thumbnail = transform(matrix, source, width, height,
-                OPTIONS_SCALE_UP | options);
         return thumbnail;
     }
 
+    /**
+     * Scales and center crops bitmaps like {@link #extractThumbnail(Bitmap, int, int)},
+     * reusing one Canvas, Paint and pair of Rects for every call instead of creating
+     * them per call. The output comes from the bitmap pool when it has one that fits,
+     * or from the caller with {@link #extractInto}.
+     *
+     * An instance must only be used by one thread at a time.
+     *
+     * @hide Only used by media framework and media provider internally.
+     */
+    public static class Thumbnailer {
+        private final Canvas mCanvas = new Canvas();
+        private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        private final Rect mSrc = new Rect();
+        private final Rect mDst = new Rect();
+
+        /**
+         * Returns a {@code width} x {@code height} center crop of {@code source},
+         * or {@code source} itself when it already has that size.
+         */
+        public Bitmap extract(Bitmap source, int width, int height) {
+            if (source.getWidth() == width && source.getHeight() == height) {
+                return source;
+            }
+            Bitmap.Config config = source.getConfig() != null
+                    ? source.getConfig()
+                    : Bitmap.Config.ARGB_8888;
+            int bytesPerPixel = bytesPerPixel(config);
+            Bitmap output = bytesPerPixel > 0
+                    ? sBitmapPool.get(width * height * bytesPerPixel)
+                    : null;
+            if (output != null) {
+                output.reconfigure(width, height, config);
+                output.eraseColor(Color.TRANSPARENT);
+            } else {
+                output = Bitmap.createBitmap(width, height, config);
+            }
+            extractInto(source, output);
+            return output;
+        }
+
+        /**
+         * Draws the center crop of {@code source} that fills {@code output}, scaled
+         * to cover it. {@code output} must be mutable.
+         */
+        public void extractInto(Bitmap source, Bitmap output) {
+            int sourceWidth = source.getWidth();
+            int sourceHeight = source.getHeight();
+            int width = output.getWidth();
+            int height = output.getHeight();
+
+            // The scale that makes the source cover the output, as transform() picks it.
+            float scale = Math.max(width / (float) sourceWidth, height / (float) sourceHeight);
+            if (scale >= .9F && scale <= 1F) {
+                // Close enough, crop without scaling like transform() does.
+                scale = 1F;
+            }
+            int cropWidth = Math.min(sourceWidth, Math.round(width / scale));
+            int cropHeight = Math.min(sourceHeight, Math.round(height / scale));
+            int left = (sourceWidth - cropWidth) / 2;
+            int top = (sourceHeight - cropHeight) / 2;
+            mSrc.set(left, top, left + cropWidth, top + cropHeight);
+
+            int drawWidth = Math.round(cropWidth * scale);
+            int drawHeight = Math.round(cropHeight * scale);
+            int x = (width - drawWidth) / 2;
+            int y = (height - drawHeight) / 2;
+            mDst.set(x, y, x + drawWidth, y + drawHeight);
+
+            mCanvas.setBitmap(output);
+            mCanvas.drawBitmap(source, mSrc, mDst, mPaint);
+            mCanvas.setBitmap(null);
+            // A new or pooled ARGB_8888 bitmap always claims alpha; keep the source's, so
+            // convertOpaque() and the disk cache still see an opaque thumbnail as opaque.
+            output.setHasAlpha(source.hasAlpha());
+        }
+    }
+
+    /**
+     * Returns a bitmap that is no longer used to the pool the decoders draw from,
+     * or recycles it when the pool cannot take it.
+     *
+     * @hide Only used by media framework and media provider internally.
+     */
+    public static void recycleThumbnail(Bitmap bitmap) {
+        if (bitmap != null && !sBitmapPool.put(bitmap)) {
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * Returns the hit, miss and eviction counts of the bitmap pool. Misses are
+     * decodes that had to allocate a new bitmap.
+     *
+     * @hide Only used by media framework and media provider internally.
+     */
+    public static String getBitmapPoolStats() {
+        return sBitmapPool.stats();
+    }
+
+    /**
+     * Decodes only the centered square a MICRO_KIND thumbnail keeps, at the largest
+     * power of two sample size that still covers {@code targetSize}, and never more
+     * than {@code maxPixels} pixels, the same cap the full decode is held to. The
+     * pixels extractThumbnail would crop away are never decoded.
+     *
+     * @return the square, or null when the format has no region decoder
+     */
+    private static Bitmap decodeCenterSquare(FileDescriptor fd, BitmapFactory.Options options,
+            int targetSize, int maxPixels) {
+        int width = options.outWidth;
+        int height = options.outHeight;
+        int side = Math.min(width, height);
+        int sample = 1;
+        while (side / (sample * 2) >= targetSize) {
+            sample *= 2;
+        }
+        // Covering targetSize can still mean more pixels than the cap, for instance
+        // 188x188 from a 4000x3000 photo; the batch budget counts on the cap.
+        while ((long) ((side + sample - 1) / sample) * ((side + sample - 1) / sample)
+                > maxPixels) {
+            sample *= 2;
+        }
+        int left = (width - side) / 2;
+        int top = (height - side) / 2;
+
+        BitmapRegionDecoder decoder = null;
+        try {
+            decoder = BitmapRegionDecoder.newInstance(fd, false);
+            BitmapFactory.Options regionOptions = new BitmapFactory.Options();
+            regionOptions.inSampleSize = sample;
+            regionOptions.inPreferredConfig = options.inPreferredConfig;
+            // No inBitmap here, the region decoder would keep the pooled bitmap's size.
+            return decoder.decodeRegion(
+                    new Rect(left, top, left + side, top + side), regionOptions);
+        } catch (IOException ex) {
+            return null;
+        } catch (IllegalArgumentException ex) {
+            return null;
+        } finally {
+            if (decoder != null) {
+                decoder.recycle();
+            }
+        }
+    }
+
+    /**
+     * Decodes {@code fd} into a pooled bitmap when one is large enough for the
+     * sampled size, and into a new bitmap otherwise.
+     */
+    private static Bitmap decodePooled(FileDescriptor fd, BitmapFactory.Options options) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            int sample = options.inSampleSize;
+            int width = (options.outWidth + sample - 1) / sample;
+            int height = (options.outHeight + sample - 1) / sample;
+            int bytesPerPixel = bytesPerPixel(options.inPreferredConfig);
+            options.inMutable = true;
+            options.inBitmap = bytesPerPixel > 0
+                    ? sBitmapPool.get(width * height * bytesPerPixel)
+                    : null;
+            if (options.inBitmap != null) {
+                try {
+                    return BitmapFactory.decodeFileDescriptor(fd, null, options);
+                } catch (IllegalArgumentException ex) {
+                    // The decoder rounded differently and the bitmap is too small.
+                    options.inBitmap = null;
+                }
+            }
+        }
+        return BitmapFactory.decodeFileDescriptor(fd, null, options);
+    }
+
+    /**
+     * Returns the bytes a pixel of {@code config} takes, or 0 for configs the pool
+     * cannot size or reuse, such as HARDWARE.
+     */
+    private static int bytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.ARGB_8888) {
+            return 4;
+        } else if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) {
+            return 2;
+        } else if (config == Bitmap.Config.ALPHA_8) {
+            return 1;
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+                && config == Bitmap.Config.RGBA_F16) {
+            return 8;
+        }
+        return 0;
+    }
+
+    /**
+     * Mutable bitmaps bucketed by allocation size, reused through
+     * {@link BitmapFactory.Options#inBitmap} so a run over a whole folder does not
+     * allocate a new bitmap per image.
+     */
+    private static class BitmapPool {
+        // Allocation sizes in ascending order, each with its bitmaps. Plain arrays so a
+        // lookup neither boxes the size nor creates an entry object.
+        private int[] mSizes = new int[8];
+        private ArrayDeque<Bitmap>[] mBuckets = newBuckets(8);
+        private int mCount;
+        private final int mMaxBytes;
+        private int mBytes;
+
+        private int mHits;
+        private int mMisses;
+        private int mEvictions;
+
+        BitmapPool(int maxBytes) {
+            mMaxBytes = maxBytes;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static ArrayDeque<Bitmap>[] newBuckets(int length) {
+            return (ArrayDeque<Bitmap>[]) new ArrayDeque[length];
+        }
+
+        /**
+         * Returns a bitmap of at least {@code bytes}, but not more than twice that
+         * so small thumbnails do not pin large bitmaps, or null.
+         */
+        synchronized Bitmap get(int bytes) {
+            int i = Arrays.binarySearch(mSizes, 0, mCount, bytes);
+            if (i < 0) {
+                i = -i - 1;
+            }
+            for (; i < mCount && mSizes[i] <= 2 * bytes; i++) {
+                Bitmap bitmap = mBuckets[i].poll();
+                if (bitmap != null) {
+                    mBytes -= mSizes[i];
+                    mHits++;
+                    return bitmap;
+                }
+            }
+            mMisses++;
+            return null;
+        }
+
+        synchronized boolean put(Bitmap bitmap) {
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT
+                    || bitmap.isRecycled() || !bitmap.isMutable()) {
+                return false;
+            }
+            int bytes = bitmap.getAllocationByteCount();
+            if (bytes > mMaxBytes) {
+                return false;
+            }
+            int i = Arrays.binarySearch(mSizes, 0, mCount, bytes);
+            if (i < 0) {
+                i = addBucket(bytes);
+            }
+            mBuckets[i].add(bitmap);
+            mBytes += bytes;
+
+            // Drop the largest bitmaps first, they are the least likely to fit again.
+            for (int j = mCount - 1; mBytes > mMaxBytes && j >= 0; ) {
+                Bitmap largest = mBuckets[j].poll();
+                if (largest == null) {
+                    j--;
+                    continue;
+                }
+                largest.recycle();
+                mBytes -= mSizes[j];
+                mEvictions++;
+            }
+            return true;
+        }
+
+        /**
+         * Adds an empty bucket for {@code bytes} and returns its index. Buckets that
+         * ran empty stay in place so get() never moves the arrays, and are dropped
+         * here, so there are never many more buckets than sizes in the pool.
+         */
+        private int addBucket(int bytes) {
+            int kept = 0;
+            for (int i = 0; i < mCount; i++) {
+                if (!mBuckets[i].isEmpty()) {
+                    mSizes[kept] = mSizes[i];
+                    mBuckets[kept] = mBuckets[i];
+                    kept++;
+                }
+            }
+            Arrays.fill(mBuckets, kept, mCount, null);
+            mCount = kept;
+            if (mCount == mSizes.length) {
+                mSizes = Arrays.copyOf(mSizes, mCount * 2);
+                mBuckets = Arrays.copyOf(mBuckets, mCount * 2);
+            }
+            int i = -Arrays.binarySearch(mSizes, 0, mCount, bytes) - 1;
+            System.arraycopy(mSizes, i, mSizes, i + 1, mCount - i);
+            System.arraycopy(mBuckets, i, mBuckets, i + 1, mCount - i);
+            mSizes[i] = bytes;
+            mBuckets[i] = new ArrayDeque<Bitmap>();
+            mCount++;
+            return i;
+        }
+
+        synchronized String stats() {
+            return "hits=" + mHits + " misses=" + mMisses + " evictions=" + mEvictions
+                    + " bytes=" + mBytes + "/" + mMaxBytes;
+        }
+    }
+
+    /**
+     * Where the EXIF thumbnail of a JPEG file is and how large it and the full image
+     * are, found by walking the JPEG markers and the TIFF directories with a few
+     * small reads. Nothing is decoded until the embedded thumbnail is known to be
+     * the better choice.
+     */
+    private static class ExifThumbnail {
+        private static final int MARKER_SOI = 0xd8;
+        private static final int MARKER_EOI = 0xd9;
+        private static final int MARKER_SOS = 0xda;
+        private static final int MARKER_APP1 = 0xe1;
+        private static final int TAG_JPEG_OFFSET = 0x0201;
+        private static final int TAG_JPEG_LENGTH = 0x0202;
+
+        /* Absolute offset and length of the embedded JPEG, length 0 when there is none. */
+        long mOffset;
+        int mLength;
+        int mWidth;
+        int mHeight;
+        int mFullWidth;
+        int mFullHeight;
+
+        /**
+         * Returns the layout of {@code filePath}, or null when it could not be read,
+         * for instance because the EXIF data is not where the scanner expects it.
+         */
+        static ExifThumbnail scan(String filePath) {
+            RandomAccessFile file = null;
+            try {
+                file = new RandomAccessFile(filePath, "r");
+                ExifThumbnail exif = new ExifThumbnail();
+                int[] size = new int[2];
+                if (!scanMarkers(file, 0, file.length(), exif, size)) {
+                    return null;
+                }
+                exif.mFullWidth = size[0];
+                exif.mFullHeight = size[1];
+                if (exif.mLength > 0) {
+                    if (scanMarkers(file, exif.mOffset, exif.mOffset + exif.mLength,
+                            null, size)) {
+                        exif.mWidth = size[0];
+                        exif.mHeight = size[1];
+                    } else {
+                        exif.mLength = 0;
+                    }
+                }
+                return exif.mFullWidth > 0 ? exif : null;
+            } catch (IOException ex) {
+                return null;
+            } finally {
+                try {
+                    if (file != null) {
+                        file.close();
+                    }
+                } catch (IOException ex) {
+                    // Ignore failures while cleaning up.
+                }
+            }
+        }
+
+        /**
+         * Walks the markers of the JPEG stream in [start, end) up to the image data,
+         * storing the frame size in {@code size} and, when {@code exif} is not null,
+         * the thumbnail location found in APP1.
+         */
+        private static boolean scanMarkers(RandomAccessFile file, long start, long end,
+                ExifThumbnail exif, int[] size) throws IOException {
+            byte[] buf = new byte[10];
+            file.seek(start);
+            file.readFully(buf, 0, 2);
+            if ((buf[0] & 0xff) != 0xff || (buf[1] & 0xff) != MARKER_SOI) {
+                return false;
+            }
+            long pos = start + 2;
+            while (pos + 4 <= end) {
+                file.seek(pos);
+                file.readFully(buf, 0, 4);
+                if ((buf[0] & 0xff) != 0xff) {
+                    return false;
+                }
+                int marker = buf[1] & 0xff;
+                if (marker == 0xff) {
+                    // Fill byte.
+                    pos++;
+                    continue;
+                }
+                if (marker == MARKER_SOS || marker == MARKER_EOI) {
+                    break;
+                }
+                int length = ((buf[2] & 0xff) << 8) | (buf[3] & 0xff);
+                if (isStartOfFrame(marker)) {
+                    file.readFully(buf, 0, 5);
+                    size[1] = ((buf[1] & 0xff) << 8) | (buf[2] & 0xff);
+                    size[0] = ((buf[3] & 0xff) << 8) | (buf[4] & 0xff);
+                    return true;
+                }
+                if (marker == MARKER_APP1 && exif != null && exif.mLength == 0) {
+                    file.readFully(buf, 0, 6);
+                    if (buf[0] == 'E' && buf[1] == 'x' && buf[2] == 'i' && buf[3] == 'f'
+                            && buf[4] == 0 && buf[5] == 0) {
+                        exif.scanTiff(file, pos + 10, pos + 2 + length);
+                    }
+                }
+                pos += 2 + length;
+            }
+            return false;
+        }
+
+        private static boolean isStartOfFrame(int marker) {
+            return marker >= 0xc0 && marker <= 0xcf
+                    && marker != 0xc4 && marker != 0xc8 && marker != 0xcc;
+        }
+
+        /* Finds the JPEG tags of IFD1, the directory describing the thumbnail. */
+        private void scanTiff(RandomAccessFile file, long tiff, long end) throws IOException {
+            byte[] header = new byte[8];
+            file.seek(tiff);
+            file.readFully(header);
+            boolean little = header[0] == 'I' && header[1] == 'I';
+            if (!little && !(header[0] == 'M' && header[1] == 'M')) {
+                return;
+            }
+            long ifd0 = readInt(header, 4, little);
+
+            // IFD0 is only skipped: its entry count, then where IFD1 starts.
+            byte[] buf = new byte[12];
+            file.seek(tiff + ifd0);
+            file.readFully(buf, 0, 2);
+            int entries = readShort(buf, 0, little);
+            file.seek(tiff + ifd0 + 2 + entries * 12L);
+            file.readFully(buf, 0, 4);
+            long ifd1 = readInt(buf, 0, little);
+            if (ifd1 == 0 || tiff + ifd1 + 2 > end) {
+                return;
+            }
+
+            file.seek(tiff + ifd1);
+            file.readFully(buf, 0, 2);
+            entries = readShort(buf, 0, little);
+            byte[] directory = new byte[entries * 12];
+            file.readFully(directory);
+            long offset = 0;
+            long length = 0;
+            for (int i = 0; i < entries; i++) {
+                int tag = readShort(directory, i * 12, little);
+                if (tag == TAG_JPEG_OFFSET) {
+                    offset = readInt(directory, i * 12 + 8, little);
+                } else if (tag == TAG_JPEG_LENGTH) {
+                    length = readInt(directory, i * 12 + 8, little);
+                }
+            }
+            if (offset > 0 && length > 0 && tiff + offset + length <= end) {
+                mOffset = tiff + offset;
+                mLength = (int) length;
+            }
+        }
+
+        private static int readShort(byte[] buf, int index, boolean little) {
+            int a = buf[index] & 0xff;
+            int b = buf[index + 1] & 0xff;
+            return little ? (b << 8) | a : (a << 8) | b;
+        }
+
+        private static long readInt(byte[] buf, int index, boolean little) {
+            long high = readShort(buf, little ? index + 2 : index, little);
+            long low = readShort(buf, little ? index : index + 2, little);
+            return (high << 16) | low;
+        }
+
+        /**
+         * Decodes the embedded thumbnail when, after sampling, it is at least as wide
+         * as the full image would be, the same choice createThumbnailFromEXIF makes.
+         *
+         * @return the thumbnail, or null when the full image should be decoded
+         */
+        Bitmap decode(String filePath, int targetSize, int maxPixels) {
+            if (mLength == 0 || mWidth == 0 || mHeight == 0) {
+                return null;
+            }
+            BitmapFactory.Options exifOptions = new BitmapFactory.Options();
+            exifOptions.outWidth = mWidth;
+            exifOptions.outHeight = mHeight;
+            exifOptions.inSampleSize = computeSampleSize(exifOptions, targetSize, maxPixels);
+            BitmapFactory.Options fullOptions = new BitmapFactory.Options();
+            fullOptions.outWidth = mFullWidth;
+            fullOptions.outHeight = mFullHeight;
+            int fullSample = computeSampleSize(fullOptions, targetSize, maxPixels);
+            if (mWidth / exifOptions.inSampleSize < mFullWidth / fullSample) {
+                return null;
+            }
+
+            byte[] data = new byte[mLength];
+            RandomAccessFile file = null;
+            try {
+                file = new RandomAccessFile(filePath, "r");
+                file.seek(mOffset);
+                file.readFully(data);
+            } catch (IOException ex) {
+                return null;
+            } finally {
+                try {
+                    if (file != null) {
+                        file.close();
+                    }
+                } catch (IOException ex) {
+                    // Ignore failures while cleaning up.
+                }
+            }
+            exifOptions.inDither = false;
+            exifOptions.inPreferredConfig = Bitmap.Config.ARGB_8888;
+            return BitmapFactory.decodeByteArray(data, 0, data.length, exifOptions);
+        }
+    }
+
+    /**
+     * Thumbnails on disk, one file per (path, kind, config). A file starts with the
+     * last-modified time and length of its source, so a source that changed is
+     * detected on the next read and its thumbnail made again.
+     */
+    private static class DiskCache {
+        private static final int MAGIC = 0x54484d42; // "THMB"
+        private static final int HEADER_SIZE = 4 + 8 + 8;
+
+        private final File mDir;
+        private final long mMaxBytes;
+        private long mBytes;
+        /* File name -> size, in access order. */
+        private final LinkedHashMap<String, Long> mEntries =
+                new LinkedHashMap<String, Long>(16, 0.75f, true);
+
+        private int mHits;
+        private int mMisses;
+        private int mStale;
+
+        DiskCache(File dir, long maxBytes) {
+            mDir = dir;
+            mMaxBytes = maxBytes;
+            dir.mkdirs();
+            File[] files = dir.listFiles();
+            if (files == null) {
+                return;
+            }
+            // Oldest first, reads touch the files so the order survives restarts.
+            Arrays.sort(files, new Comparator<File>() {
+                @Override
+                public int compare(File a, File b) {
+                    return Long.compare(a.lastModified(), b.lastModified());
+                }
+            });
+            for (File file : files) {
+                if (file.getName().endsWith(".tmp")) {
+                    file.delete();
+                    continue;
+                }
+                mEntries.put(file.getName(), file.length());
+                mBytes += file.length();
+            }
+            trim();
+        }
+
+        Bitmap get(File source, int kind, Bitmap.Config config) {
+            File file = new File(mDir, name(source, kind, config));
+            byte[] data = read(file);
+            if (data == null) {
+                miss(null);
+                return null;
+            }
+            ByteBuffer header = ByteBuffer.wrap(data, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC || header.getLong() != source.lastModified()
+                    || header.getLong() != source.length()) {
+                synchronized (this) {
+                    mStale++;
+                }
+                miss(file);
+                return null;
+            }
+
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inPreferredConfig = config;
+            Bitmap bitmap = BitmapFactory.decodeByteArray(data, HEADER_SIZE,
+                    data.length - HEADER_SIZE, options);
+            if (bitmap == null) {
+                miss(file);
+                return null;
+            }
+            synchronized (this) {
+                mHits++;
+                mEntries.get(file.getName());
+            }
+            file.setLastModified(System.currentTimeMillis());
+            return bitmap;
+        }
+
+        void put(File source, int kind, Bitmap.Config config, Bitmap bitmap) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+                    && bitmap.getConfig() == Bitmap.Config.HARDWARE) {
+                // The pixels are only in graphics memory, compress a software copy.
+                bitmap = bitmap.copy(Bitmap.Config.ARGB_8888, false);
+                if (bitmap == null) {
+                    return;
+                }
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            try {
+                out.writeInt(MAGIC);
+                out.writeLong(source.lastModified());
+                out.writeLong(source.length());
+            } catch (IOException ex) {
+                return;
+            }
+            // Opaque thumbnails compress far better as JPEG and lose nothing visible.
+            if (bitmap.hasAlpha()) {
+                bitmap.compress(Bitmap.CompressFormat.PNG, 100, bytes);
+            } else {
+                bitmap.compress(Bitmap.CompressFormat.JPEG, 90, bytes);
+            }
+
+            String name = name(source, kind, config);
+            File file = new File(mDir, name);
+            File tmp = new File(mDir, name + "." + Thread.currentThread().getId() + ".tmp");
+            FileOutputStream stream = null;
+            try {
+                stream = new FileOutputStream(tmp);
+                bytes.writeTo(stream);
+            } catch (IOException ex) {
+                Log.w(TAG, "Unable to write thumbnail of " + source, ex);
+                tmp.delete();
+                return;
+            } finally {
+                try {
+                    if (stream != null) {
+                        stream.close();
+                    }
+                } catch (IOException ex) {
+                    // Ignore failures while cleaning up.
+                }
+            }
+
+            synchronized (this) {
+                if (!tmp.renameTo(file)) {
+                    tmp.delete();
+                    return;
+                }
+                Long old = mEntries.put(name, file.length());
+                mBytes += file.length() - (old == null ? 0 : old);
+                trim();
+            }
+        }
+
+        private synchronized void miss(File stale) {
+            mMisses++;
+            if (stale != null) {
+                Long size = mEntries.remove(stale.getName());
+                if (size != null) {
+                    mBytes -= size;
+                }
+                stale.delete();
+            }
+        }
+
+        private void trim() {
+            Iterator<Map.Entry<String, Long>> it = mEntries.entrySet().iterator();
+            while (mBytes > mMaxBytes && it.hasNext()) {
+                Map.Entry<String, Long> eldest = it.next();
+                new File(mDir, eldest.getKey()).delete();
+                mBytes -= eldest.getValue();
+                it.remove();
+            }
+        }
+
+        synchronized String stats() {
+            int requests = mHits + mMisses;
+            return "hits=" + mHits + " misses=" + mMisses + " stale=" + mStale
+                    + " hitRate=" + (requests == 0 ? 0 : mHits * 100 / requests) + "%"
+                    + " bytes=" + mBytes + "/" + mMaxBytes;
+        }
+
+        /* Reads the whole cache file, thumbnails are small enough for one read. */
+        private static byte[] read(File file) {
+            long length = file.length();
+            if (length <= HEADER_SIZE || length > Integer.MAX_VALUE) {
+                return null;
+            }
+            byte[] data = new byte[(int) length];
+            FileInputStream stream = null;
+            try {
+                stream = new FileInputStream(file);
+                int read = 0;
+                while (read < data.length) {
+                    int n = stream.read(data, read, data.length - read);
+                    if (n < 0) {
+                        return null;
+                    }
+                    read += n;
+                }
+                return data;
+            } catch (IOException ex) {
+                return null;
+            } finally {
+                try {
+                    if (stream != null) {
+                        stream.close();
+                    }
+                } catch (IOException ex) {
+                    // Ignore failures while cleaning up.
+                }
+            }
+        }
+
+        private static String name(File source, int kind, Bitmap.Config config) {
+            String key = source.getAbsolutePath() + "\n" + kind + "\n" + config;
+            try {
+                byte[] digest = MessageDigest.getInstance("MD5")
+                        .digest(key.getBytes(StandardCharsets.UTF_8));
+                StringBuilder name = new StringBuilder(digest.length * 2);
+                for (byte b : digest) {
+                    name.append(Character.forDigit((b >> 4) & 0xf, 16));
+                    name.append(Character.forDigit(b & 0xf, 16));
+                }
+                return name.toString();
+            } catch (NoSuchAlgorithmException ex) {
+                return Integer.toHexString(key.hashCode());
+            }
+        }
+    }
+
     /*
      * Compute the sample size as a function of minSideLength
      * and maxNumOfPixels.
@@ -0,0 +1,347 @@
+package com.pkmunla.asus.homedashboard.Data;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+import com.pkmunla.asus.homedashboard.Model.Model;
+import com.pkmunla.asus.homedashboard.Search.PrefixIndex;
+import com.pkmunla.asus.homedashboard.Search.TextIndex;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+//one listener on the "Data" node for the whole app, shared by every list screen
+public class DataRepository {
+
+    private static final String TAG = "DataRepository";
+
+    //keep the listener a little while after the last screen leaves, so going back and forth does not download again
+    private static final long LINGER_MILLIS = 30 * 1000;
+
+    //callbacks always come on the main thread
+    public interface Listener {
+        void onLoaded(List<String> keys, List<Model> models);
+        void onChildChanged(String key, Model model);
+        void onChildRemoved(String key);
+    }
+
+    //counters for this process, to check how much the shared listener saves
+    public static class Stats {
+        public int firebaseListeners;
+        public int firebaseAttaches;
+        public int subscribers;
+        public long bytesReceived;
+        public long deserializations;
+
+        @Override
+        public String toString() {
+            return "listeners=" + firebaseListeners + " attaches=" + firebaseAttaches
+                    + " subscribers=" + subscribers + " bytes=" + bytesReceived
+                    + " deserializations=" + deserializations;
+        }
+    }
+
+    private static DataRepository sInstance;
+
+    public static synchronized DataRepository get(Context context) {
+        if (sInstance == null) {
+            sInstance = new DataRepository(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private final ModelStore mStore;
+    private final DatabaseReference mRef;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Stats mStats = new Stats();
+
+    //in memory snapshot, sorted by key like firebase
+    private final TreeMap<String, Model> mModels = new TreeMap<>();
+    private final List<Listener> mListeners = new ArrayList<>();
+
+    //search indexes, kept up to date with the snapshot; titles are searched through the text index
+    private final PrefixIndex mLocationIndex = new PrefixIndex();
+    private final TextIndex mTextIndex = new TextIndex();
+    private boolean mLoading;
+    private boolean mLoaded;
+    private boolean mAttached;
+
+    //keys that were on disk before firebase answered, and keys firebase has sent since
+    private final Set<String> mLocalKeys = new HashSet<>();
+    private final Set<String> mSeenKeys = new HashSet<>();
+
+    //writes waiting for the next flush to disk
+    private final Map<String, Model> mPendingPuts = new HashMap<>();
+    private final Set<String> mPendingRemoves = new HashSet<>();
+    private boolean mFlushScheduled;
+
+    private DataRepository(Context context) {
+        mStore = ModelStore.get(context);
+        mRef = FirebaseDatabase.getInstance().getReference("Data");
+    }
+
+    public Stats getStats() {
+        return mStats;
+    }
+
+    public DatabaseReference getReference() {
+        return mRef;
+    }
+
+    //register a screen; the first one starts loading, later ones get the snapshot right away
+    public void subscribe(Listener listener) {
+        if (mListeners.contains(listener)) {
+            return;
+        }
+        mListeners.add(listener);
+        mStats.subscribers = mListeners.size();
+        mHandler.removeCallbacks(mDetach);
+
+        if (mLoaded) {
+            listener.onLoaded(new ArrayList<>(mModels.keySet()), new ArrayList<>(mModels.values()));
+            if (!mAttached) {
+                attach();
+            }
+        } else if (!mLoading) {
+            load();
+        }
+    }
+
+    public void unsubscribe(Listener listener) {
+        mListeners.remove(listener);
+        mStats.subscribers = mListeners.size();
+        if (mListeners.isEmpty()) {
+            mHandler.removeCallbacks(mDetach);
+            mHandler.postDelayed(mDetach, LINGER_MILLIS);
+        }
+    }
+
+    public List<String> getKeys() {
+        return new ArrayList<>(mModels.keySet());
+    }
+
+    public List<Model> getModels() {
+        return new ArrayList<>(mModels.values());
+    }
+
+    public Model getModel(String key) {
+        return mModels.get(key);
+    }
+
+    //index of the "location" child, for searching by the start of a place name
+    public PrefixIndex getLocationIndex() {
+        return mLocationIndex;
+    }
+
+    //index over all text fields, for searching words anywhere in a row
+    public TextIndex getTextIndex() {
+        return mTextIndex;
+    }
+
+    private void index(String key, Model model) {
+        mLocationIndex.put(key, model.getLocation());
+        mTextIndex.put(key, model);
+    }
+
+    private void unindex(String key) {
+        mLocationIndex.remove(key);
+        mTextIndex.remove(key);
+    }
+
+    private void load() {
+        mLoading = true;
+        final long startTime = SystemClock.elapsedRealtime();
+        ModelStore.executor().execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<String> keys = new ArrayList<>();
+                final List<Model> models = new ArrayList<>();
+                mStore.loadAll(keys, models);
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        Log.d(TAG, "first " + keys.size() + " rows from local store in "
+                                + (SystemClock.elapsedRealtime() - startTime) + " ms");
+                        mLoading = false;
+                        mLoaded = true;
+                        for (int i = 0; i < keys.size(); i++) {
+                            mModels.put(keys.get(i), models.get(i));
+                            index(keys.get(i), models.get(i));
+                        }
+                        mLocalKeys.addAll(keys);
+                        for (Listener listener : new ArrayList<>(mListeners)) {
+                            listener.onLoaded(new ArrayList<>(keys), new ArrayList<>(models));
+                        }
+                        if (!mListeners.isEmpty()) {
+                            attach();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void attach() {
+        mAttached = true;
+        mSeenKeys.clear();
+        mLocalKeys.clear();
+        mLocalKeys.addAll(mModels.keySet());
+        mRef.addChildEventListener(mChildListener);
+        //fires after the first batch of child events, so anything not seen by then was deleted
+        mRef.addListenerForSingleValueEvent(mSyncListener);
+        mStats.firebaseListeners++;
+        mStats.firebaseAttaches++;
+        Log.d(TAG, "attached " + mStats);
+    }
+
+    private final Runnable mDetach = new Runnable() {
+        @Override
+        public void run() {
+            if (!mAttached || !mListeners.isEmpty()) {
+                return;
+            }
+            mRef.removeEventListener(mChildListener);
+            mRef.removeEventListener(mSyncListener);
+            mAttached = false;
+            mStats.firebaseListeners--;
+            Log.d(TAG, "detached " + mStats);
+        }
+    };
+
+    private final ChildEventListener mChildListener = new ChildEventListener() {
+        @Override
+        public void onChildAdded(@NonNull DataSnapshot dataSnapshot, String previousChildName) {
+            changed(dataSnapshot);
+        }
+
+        @Override
+        public void onChildChanged(@NonNull DataSnapshot dataSnapshot, String previousChildName) {
+            changed(dataSnapshot);
+        }
+
+        @Override
+        public void onChildRemoved(@NonNull DataSnapshot dataSnapshot) {
+            removed(dataSnapshot.getKey());
+        }
+
+        @Override
+        public void onChildMoved(@NonNull DataSnapshot dataSnapshot, String previousChildName) {
+
+        }
+
+        @Override
+        public void onCancelled(@NonNull DatabaseError databaseError) {
+            Log.w(TAG, "listener cancelled", databaseError.toException());
+        }
+    };
+
+    private final ValueEventListener mSyncListener = new ValueEventListener() {
+        @Override
+        public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+            for (String key : mLocalKeys) {
+                if (!mSeenKeys.contains(key)) {
+                    removed(key);
+                }
+            }
+            mLocalKeys.clear();
+        }
+
+        @Override
+        public void onCancelled(@NonNull DatabaseError databaseError) {
+            Log.w(TAG, "sync cancelled", databaseError.toException());
+        }
+    };
+
+    private void changed(DataSnapshot dataSnapshot) {
+        String key = dataSnapshot.getKey();
+        Model model = ModelParser.parse(dataSnapshot);
+        if (model == null) {
+            return;
+        }
+        mStats.deserializations++;
+        mStats.bytesReceived += sizeOf(key, model);
+        mSeenKeys.add(key);
+        //firebase sends every child again on each attach; rows the local copy already has
+        //are not written, indexed or bound again
+        if (model.equals(mModels.get(key))) {
+            return;
+        }
+        mModels.put(key, model);
+        index(key, model);
+        mPendingRemoves.remove(key);
+        mPendingPuts.put(key, model);
+        scheduleFlush();
+        for (Listener listener : new ArrayList<>(mListeners)) {
+            listener.onChildChanged(key, model);
+        }
+    }
+
+    private void removed(String key) {
+        if (mModels.remove(key) == null) {
+            return;
+        }
+        unindex(key);
+        mPendingPuts.remove(key);
+        mPendingRemoves.add(key);
+        scheduleFlush();
+        for (Listener listener : new ArrayList<>(mListeners)) {
+            listener.onChildRemoved(key);
+        }
+    }
+
+    //firebase does not report wire bytes, so count the characters of what it delivered
+    private static long sizeOf(String key, Model model) {
+        return length(key) + length(model.getTitle()) + length(model.getDescription())
+                + length(model.getLocation()) + length(model.getUstad())
+                + length(model.getImage()) + length(model.getMasjid());
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    //collect the events of one batch and write them in a single transaction
+    private void scheduleFlush() {
+        if (mFlushScheduled) {
+            return;
+        }
+        mFlushScheduled = true;
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mFlushScheduled = false;
+                final Map<String, Model> puts = new HashMap<>(mPendingPuts);
+                final Set<String> removes = new HashSet<>(mPendingRemoves);
+                mPendingPuts.clear();
+                mPendingRemoves.clear();
+                ModelStore.executor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!puts.isEmpty()) {
+                            mStore.putAll(puts);
+                        }
+                        if (!removes.isEmpty()) {
+                            mStore.removeAll(removes);
+                        }
+                    }
+                });
+            }
+        });
+    }
+}
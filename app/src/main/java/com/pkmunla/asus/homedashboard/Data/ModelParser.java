@@ -0,0 +1,38 @@
+package com.pkmunla.asus.homedashboard.Data;
+
+import com.google.firebase.database.DataSnapshot;
+import com.pkmunla.asus.homedashboard.Model.Model;
+
+import java.util.Map;
+
+//reads a child of "Data" straight from the raw snapshot value, without the reflection mapper of getValue(Model.class)
+public class ModelParser {
+
+    private ModelParser() {
+    }
+
+    //null when the child is not an object
+    public static Model parse(DataSnapshot dataSnapshot) {
+        Object value = dataSnapshot.getValue();
+        if (!(value instanceof Map)) {
+            return null;
+        }
+        Map<?, ?> map = (Map<?, ?>) value;
+        return new Model(
+                string(map.get("title")),
+                string(map.get("description")),
+                string(map.get("location")),
+                string(map.get("ustad")),
+                string(map.get("image")),
+                string(map.get("masjid")),
+                string(map.get("placeholder")));
+    }
+
+    //firebase gives numbers and booleans as Long, Double and Boolean
+    private static String string(Object value) {
+        if (value == null || value instanceof String) {
+            return (String) value;
+        }
+        return String.valueOf(value);
+    }
+}
@@ -0,0 +1,126 @@
+package com.pkmunla.asus.homedashboard.Data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import com.pkmunla.asus.homedashboard.Model.Model;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+//local copy of the firebase "Data" node, so lists can be shown before the network answers
+public class ModelStore extends SQLiteOpenHelper {
+
+    private static final String DATABASE_NAME = "data.db";
+    private static final int DATABASE_VERSION = 2;
+
+    private static final String TABLE = "data";
+    private static final String[] COLUMNS = {
+            "key", "title", "description", "location", "ustad", "image", "masjid", "placeholder"
+    };
+
+    //every read and write goes through this one thread
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor();
+
+    private static ModelStore sInstance;
+
+    public static synchronized ModelStore get(Context context) {
+        if (sInstance == null) {
+            sInstance = new ModelStore(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    public static ExecutorService executor() {
+        return sExecutor;
+    }
+
+    private ModelStore(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE + " ("
+                + "key TEXT PRIMARY KEY, "
+                + "title TEXT, "
+                + "description TEXT, "
+                + "location TEXT, "
+                + "ustad TEXT, "
+                + "image TEXT, "
+                + "masjid TEXT, "
+                + "placeholder TEXT)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        //the table is only a mirror, firebase fills it again
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE);
+        onCreate(db);
+    }
+
+    //read all rows ordered by key, the same order firebase gives the children
+    public void loadAll(List<String> keys, List<Model> models) {
+        Cursor cursor = getReadableDatabase().query(TABLE, COLUMNS, null, null, null, null, "key");
+        try {
+            while (cursor.moveToNext()) {
+                Model model = new Model(
+                        cursor.getString(1),
+                        cursor.getString(2),
+                        cursor.getString(3),
+                        cursor.getString(4),
+                        cursor.getString(5),
+                        cursor.getString(6),
+                        cursor.getString(7));
+                keys.add(cursor.getString(0));
+                models.add(model);
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    //write a batch of changed rows in one transaction
+    public void putAll(Map<String, Model> models) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            for (Map.Entry<String, Model> entry : models.entrySet()) {
+                Model model = entry.getValue();
+                values.clear();
+                values.put("key", entry.getKey());
+                values.put("title", model.getTitle());
+                values.put("description", model.getDescription());
+                values.put("location", model.getLocation());
+                values.put("ustad", model.getUstad());
+                values.put("image", model.getImage());
+                values.put("masjid", model.getMasjid());
+                values.put("placeholder", model.getPlaceholder());
+                db.insertWithOnConflict(TABLE, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    public void removeAll(Collection<String> keys) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (String key : keys) {
+                db.delete(TABLE, "key=?", new String[]{key});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+}
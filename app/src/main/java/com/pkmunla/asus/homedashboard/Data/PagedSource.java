@@ -0,0 +1,216 @@
+package com.pkmunla.asus.homedashboard.Data;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+import com.pkmunla.asus.homedashboard.Model.Model;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+//loads the "Data" node one page at a time while the list scrolls, and forgets pages far away,
+//so memory depends on the page size and not on how many rows firebase has
+public class PagedSource extends RecyclerView.OnScrollListener {
+
+    private static final String TAG = "PagedSource";
+
+    private static final String PREFS = "settings";
+    private static final String PREF_PAGED = "paged_list";
+
+    public static class Config {
+        //rows per firebase query
+        public final int pageSize;
+        //load the next page when this many rows are left before the end
+        public final int prefetchDistance;
+        //pages kept in memory, the farthest one from the screen is dropped
+        public final int maxPages;
+
+        public Config(int pageSize, int prefetchDistance, int maxPages) {
+            this.pageSize = pageSize;
+            this.prefetchDistance = prefetchDistance;
+            this.maxPages = maxPages;
+        }
+
+        public static final Config DEFAULT = new Config(20, 10, 5);
+    }
+
+    public static boolean isEnabled(Context context) {
+        return context.getSharedPreferences(PREFS, Context.MODE_PRIVATE).getBoolean(PREF_PAGED, false);
+    }
+
+    public static void setEnabled(Context context, boolean enabled) {
+        context.getSharedPreferences(PREFS, Context.MODE_PRIVATE).edit().putBoolean(PREF_PAGED, enabled).apply();
+    }
+
+    private final DatabaseReference mRef;
+    private final RecyclerView mRecyclerView;
+    private final DataRepository.Listener mListener;
+    private final Config mConfig;
+
+    //keys of each page held, in key order
+    private final LinkedList<List<String>> mPages = new LinkedList<>();
+    private boolean mLoading;
+    private boolean mReachedStart = true;
+    private boolean mReachedEnd;
+    //bumped on stop, so answers for an old start are ignored
+    private int mGeneration;
+
+    public PagedSource(DatabaseReference ref, RecyclerView recyclerView, DataRepository.Listener listener, Config config) {
+        mRef = ref;
+        mRecyclerView = recyclerView;
+        mListener = listener;
+        mConfig = config;
+    }
+
+    //the first start loads page one; later starts, like coming back from a detail screen, go on
+    //from the pages already shown, so the list and its scroll position stay as they were
+    public void start() {
+        mGeneration++;
+        //a page asked for before the last stop is ignored when it comes, so it may be asked again
+        mLoading = false;
+        mRecyclerView.addOnScrollListener(this);
+        if (!mPages.isEmpty()) {
+            return;
+        }
+        mReachedStart = true;
+        mReachedEnd = false;
+        mListener.onLoaded(new ArrayList<String>(), new ArrayList<Model>());
+        loadNext();
+    }
+
+    public void stop() {
+        mGeneration++;
+        mRecyclerView.removeOnScrollListener(this);
+    }
+
+    @Override
+    public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+        LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+        int first = layoutManager.findFirstVisibleItemPosition();
+        int last = layoutManager.findLastVisibleItemPosition();
+        int count = recyclerView.getAdapter().getItemCount();
+
+        if (dy >= 0 && !mReachedEnd && last >= count - mConfig.prefetchDistance) {
+            loadNext();
+        } else if (dy < 0 && !mReachedStart && first < mConfig.prefetchDistance) {
+            loadPrevious();
+        }
+    }
+
+    private void loadNext() {
+        if (mLoading) {
+            return;
+        }
+        mLoading = true;
+
+        Query query;
+        final String cursor = mPages.isEmpty() ? null : last(mPages.getLast());
+        if (cursor == null) {
+            query = mRef.orderByKey().limitToFirst(mConfig.pageSize);
+        } else {
+            //the cursor row comes back again as the first child
+            query = mRef.orderByKey().startAt(cursor).limitToFirst(mConfig.pageSize + 1);
+        }
+        query.addListenerForSingleValueEvent(new PageListener(mGeneration, cursor, true));
+    }
+
+    private void loadPrevious() {
+        if (mLoading || mPages.isEmpty()) {
+            return;
+        }
+        mLoading = true;
+
+        String cursor = mPages.getFirst().get(0);
+        Query query = mRef.orderByKey().endAt(cursor).limitToLast(mConfig.pageSize + 1);
+        query.addListenerForSingleValueEvent(new PageListener(mGeneration, cursor, false));
+    }
+
+    private class PageListener implements ValueEventListener {
+
+        private final int mPageGeneration;
+        private final String mCursor;
+        private final boolean mForward;
+
+        PageListener(int generation, String cursor, boolean forward) {
+            mPageGeneration = generation;
+            mCursor = cursor;
+            mForward = forward;
+        }
+
+        @Override
+        public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+            if (mPageGeneration != mGeneration) {
+                return;
+            }
+            mLoading = false;
+
+            List<String> keys = new ArrayList<>();
+            for (DataSnapshot child : dataSnapshot.getChildren()) {
+                String key = child.getKey();
+                if (key.equals(mCursor)) {
+                    continue;
+                }
+                Model model = ModelParser.parse(child);
+                if (model == null) {
+                    continue;
+                }
+                keys.add(key);
+                mListener.onChildChanged(key, model);
+            }
+
+            if (mForward) {
+                mReachedEnd = keys.size() < mConfig.pageSize;
+            } else {
+                mReachedStart = keys.size() < mConfig.pageSize;
+            }
+            if (keys.isEmpty()) {
+                return;
+            }
+            if (mForward) {
+                mPages.addLast(keys);
+            } else {
+                mPages.addFirst(keys);
+            }
+            trim(mForward);
+        }
+
+        @Override
+        public void onCancelled(@NonNull DatabaseError databaseError) {
+            if (mPageGeneration == mGeneration) {
+                mLoading = false;
+            }
+            Log.w(TAG, "page cancelled", databaseError.toException());
+        }
+    }
+
+    //drop pages from the side the list is moving away from
+    private void trim(boolean movingForward) {
+        while (mPages.size() > mConfig.maxPages) {
+            List<String> page;
+            if (movingForward) {
+                page = mPages.removeFirst();
+                mReachedStart = false;
+            } else {
+                page = mPages.removeLast();
+                mReachedEnd = false;
+            }
+            for (String key : page) {
+                mListener.onChildRemoved(key);
+            }
+        }
+    }
+
+    private static String last(List<String> page) {
+        return page.get(page.size() - 1);
+    }
+}
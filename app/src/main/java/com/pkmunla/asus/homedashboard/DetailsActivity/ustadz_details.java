@@ -1,7 +1,6 @@
 package com.pkmunla.asus.homedashboard.DetailsActivity;
 
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.os.Bundle;
 import android.widget.ImageView;
 import android.widget.TextView;
@@ -9,7 +8,9 @@ import android.widget.TextView;
 import androidx.appcompat.app.ActionBar;
 import androidx.appcompat.app.AppCompatActivity;
 
+import com.pkmunla.asus.homedashboard.Image.ImageStore;
 import com.pkmunla.asus.homedashboard.R;
+import com.squareup.picasso.Picasso;
 
 public class ustadz_details extends AppCompatActivity {
 
@@ -40,13 +41,12 @@ public class ustadz_details extends AppCompatActivity {
         mImageView = findViewById(R.id.ImageView);
 
         //get data from intent
-        byte [] bytes = getIntent().getByteArrayExtra("image");
+        String image = getIntent().getStringExtra("image");
         String judul = getIntent().getStringExtra("title");
         String lokasi = getIntent().getStringExtra("location");
         String deskripsi = getIntent().getStringExtra("description");
         String masjid = getIntent().getStringExtra("masjid");
         String ustadz = getIntent().getStringExtra("ustad");
-        Bitmap bmp = BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
 
         //set data to view
         mTitleTV.setText(judul);
@@ -54,7 +54,13 @@ public class ustadz_details extends AppCompatActivity {
         mLocationTV.setText(lokasi);
         mUstadTV.setText(ustadz);
         mMasjidTV.setText(masjid);
-        mImageView.setImageBitmap(bmp);
+        //the list already decoded this image, fall back to loading it when it is gone
+        Bitmap bmp = ImageStore.get(image);
+        if (bmp != null) {
+            mImageView.setImageBitmap(bmp);
+        } else {
+            Picasso.get().load(image).fit().centerCrop().into(mImageView);
+        }
 
     }
 
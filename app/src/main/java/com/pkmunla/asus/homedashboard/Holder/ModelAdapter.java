@@ -0,0 +1,284 @@
+package com.pkmunla.asus.homedashboard.Holder;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AdapterListUpdateCallback;
+import androidx.recyclerview.widget.AsyncDifferConfig;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListUpdateCallback;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.pkmunla.asus.homedashboard.Data.DataRepository;
+import com.pkmunla.asus.homedashboard.Model.Model;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+//recyclerview adapter over the rows of the "Data" node; changes are diffed off the main thread
+//so only rows whose content changed are bound again
+public abstract class ModelAdapter extends RecyclerView.Adapter<ViewHolder> implements DataRepository.Listener {
+
+    private static final String TAG = "ModelAdapter";
+
+    //rows shown while searching; null shows everything
+    public interface Filter {
+        boolean matches(Model model);
+    }
+
+    //one row: the firebase key and its data
+    public static class Item {
+        public final String key;
+        public final Model model;
+
+        Item(String key, Model model) {
+            this.key = key;
+            this.model = model;
+        }
+    }
+
+    private static final DiffUtil.ItemCallback<Item> DIFF_CALLBACK = new DiffUtil.ItemCallback<Item>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Item oldItem, @NonNull Item newItem) {
+            return oldItem.key.equals(newItem.key);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Item oldItem, @NonNull Item newItem) {
+            return oldItem.model.equals(newItem.model);
+        }
+    };
+
+    //rows the last diff told the list to rebind, insert or remove, to see what an update costs;
+    //binds from scrolling are not counted
+    private int mChanged;
+    private int mInserted;
+    private int mRemoved;
+
+    private final ListUpdateCallback mUpdateCallback = new ListUpdateCallback() {
+        private final AdapterListUpdateCallback mAdapterCallback = new AdapterListUpdateCallback(ModelAdapter.this);
+
+        @Override
+        public void onInserted(int position, int count) {
+            mInserted += count;
+            mAdapterCallback.onInserted(position, count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            mRemoved += count;
+            mAdapterCallback.onRemoved(position, count);
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            mAdapterCallback.onMoved(fromPosition, toPosition);
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            mChanged += count;
+            mAdapterCallback.onChanged(position, count, payload);
+        }
+    };
+
+    private final int mLayout;
+    private final AsyncListDiffer<Item> mDiffer =
+            new AsyncListDiffer<>(mUpdateCallback, new AsyncDifferConfig.Builder<>(DIFF_CALLBACK).build());
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    private Filter mFilter;
+    private boolean mSortedByKey = true;
+    //rows as they should be; the differ catches up with this list
+    private final List<Item> mItems = new ArrayList<>();
+    private boolean mSubmitScheduled;
+
+    public ModelAdapter(int layout) {
+        mLayout = layout;
+        setHasStableIds(true);
+    }
+
+    protected abstract void populateViewHolder(ViewHolder viewHolder, Model model, int position);
+
+    public Model getItem(int position) {
+        return mDiffer.getCurrentList().get(position).model;
+    }
+
+    public String getKey(int position) {
+        return mDiffer.getCurrentList().get(position).key;
+    }
+
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext()).inflate(mLayout, parent, false);
+        return new ViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder viewHolder, int position) {
+        populateViewHolder(viewHolder, getItem(position), position);
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull ViewHolder viewHolder) {
+        viewHolder.cancelImage();
+    }
+
+    @Override
+    public int getItemCount() {
+        return mDiffer.getCurrentList().size();
+    }
+
+    //stable id from the key itself, so nothing is kept per key ever shown (64-bit FNV-1a;
+    //a collision needs two of the few rows on screen to share a hash)
+    @Override
+    public long getItemId(int position) {
+        String key = getKey(position);
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    @Override
+    public void onLoaded(List<String> keys, List<Model> models) {
+        if (mFilter != null && !mSortedByKey) {
+            keepRanking(keys, models);
+            return;
+        }
+        mSortedByKey = true;
+        mItems.clear();
+        for (int i = 0; i < keys.size(); i++) {
+            if (mFilter == null || mFilter.matches(models.get(i))) {
+                mItems.add(new Item(keys.get(i), models.get(i)));
+            }
+        }
+        scheduleSubmit();
+    }
+
+    //a subscribe while ranked results are shown: the rows keep their rank, with the loaded data;
+    //rows that left are dropped and rows that now match go to the end, like onChildChanged does
+    private void keepRanking(List<String> keys, List<Model> models) {
+        Map<String, Model> loaded = new LinkedHashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            loaded.put(keys.get(i), models.get(i));
+        }
+        List<Item> items = new ArrayList<>(mItems.size());
+        for (Item item : mItems) {
+            Model model = loaded.remove(item.key);
+            if (model != null && mFilter.matches(model)) {
+                items.add(new Item(item.key, model));
+            }
+        }
+        for (Map.Entry<String, Model> entry : loaded.entrySet()) {
+            if (mFilter.matches(entry.getValue())) {
+                items.add(new Item(entry.getKey(), entry.getValue()));
+            }
+        }
+        mItems.clear();
+        mItems.addAll(items);
+        scheduleSubmit();
+    }
+
+    //swap in new search results; they may be sorted by key or ranked, the rows follow their order
+    public void setResults(Filter filter, List<String> keys, List<Model> models) {
+        mFilter = filter;
+        mSortedByKey = isSorted(keys);
+        mItems.clear();
+        for (int i = 0; i < keys.size(); i++) {
+            mItems.add(new Item(keys.get(i), models.get(i)));
+        }
+        scheduleSubmit();
+    }
+
+    @Override
+    public void onChildChanged(String key, Model model) {
+        if (mFilter != null && !mFilter.matches(model)) {
+            onChildRemoved(key);
+            return;
+        }
+        int index = indexOf(key);
+        if (index >= 0) {
+            mItems.set(index, new Item(key, model));
+        } else {
+            mItems.add(-index - 1, new Item(key, model));
+        }
+        scheduleSubmit();
+    }
+
+    @Override
+    public void onChildRemoved(String key) {
+        int index = indexOf(key);
+        if (index >= 0) {
+            mItems.remove(index);
+            scheduleSubmit();
+        }
+    }
+
+    //a batch of child events becomes one diff
+    private void scheduleSubmit() {
+        if (mSubmitScheduled) {
+            return;
+        }
+        mSubmitScheduled = true;
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mSubmitScheduled = false;
+                Log.d(TAG, "previous update: changed=" + mChanged + " inserted=" + mInserted
+                        + " removed=" + mRemoved + " of " + getItemCount() + " rows");
+                mChanged = 0;
+                mInserted = 0;
+                mRemoved = 0;
+                mDiffer.submitList(new ArrayList<>(mItems));
+            }
+        });
+    }
+
+    private static boolean isSorted(List<String> keys) {
+        for (int i = 1; i < keys.size(); i++) {
+            if (keys.get(i - 1).compareTo(keys.get(i)) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //position of key in mItems, or -(insert position) - 1 when it is not there
+    private int indexOf(String key) {
+        if (mSortedByKey) {
+            int low = 0;
+            int high = mItems.size() - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int compare = mItems.get(middle).key.compareTo(key);
+                if (compare < 0) {
+                    low = middle + 1;
+                } else if (compare > 0) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -low - 1;
+        }
+        for (int i = 0; i < mItems.size(); i++) {
+            if (mItems.get(i).key.equals(key)) {
+                return i;
+            }
+        }
+        //ranked rows that are new go to the end
+        return -mItems.size() - 1;
+    }
+}
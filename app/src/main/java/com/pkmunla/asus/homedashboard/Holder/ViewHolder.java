@@ -1,24 +1,45 @@
 package com.pkmunla.asus.homedashboard.Holder;
 
 import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
 import android.view.View;
 import android.widget.ImageView;
 import android.widget.TextView;
 
+import androidx.appcompat.widget.AppCompatTextView;
+import androidx.core.text.PrecomputedTextCompat;
+import androidx.core.widget.TextViewCompat;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.pkmunla.asus.homedashboard.Image.BlurHash;
+import com.pkmunla.asus.homedashboard.Image.ImageLoader;
 import com.pkmunla.asus.homedashboard.R;
-import com.squareup.picasso.Picasso;
+import com.squareup.picasso.Callback;
 
 public class ViewHolder extends RecyclerView.ViewHolder {
 
     View mView;
+    TextView mTitleTv, mDescTV, mUstadTV, mMasjidTV, mLocationTv;
+    ImageView mImageTv;
+
+    //bytes of the bitmap decoded for this row, 0 until it is loaded
+    int mImageBytes;
 
     public ViewHolder (View itemView){
         super(itemView);
 
         mView = itemView;
 
+        //view, looked up once per holder instead of on every bind
+        mTitleTv = itemView.findViewById(R.id.rTitleTV);
+        mDescTV = itemView.findViewById(R.id.rDescriptionTV);
+        mUstadTV = itemView.findViewById(R.id.rUstadzTV);
+        mMasjidTV = itemView.findViewById(R.id.rMasjidTV);
+        mLocationTv = itemView.findViewById(R.id.rLocationTV);
+        mImageTv = itemView.findViewById(R.id.rImageView);
+
         itemView.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View view) {
@@ -36,23 +57,57 @@ public class ViewHolder extends RecyclerView.ViewHolder {
     }
 
     //set details to recyclerview row
-    public void setDetails(Context ctx, String title, String image, String location, String desctiption, String ustad, String masjid){
-
-        //view
-        TextView mTitleTv = mView.findViewById(R.id.rTitleTV);
-        TextView mDescTV = mView.findViewById(R.id.rDescriptionTV);
-        TextView mUstadTV = mView.findViewById(R.id.rUstadzTV);
-        TextView mMasjidTV = mView.findViewById(R.id.rMasjidTV);
-        TextView mLocationTv = mView.findViewById(R.id.rLocationTV);
-        ImageView mImageTv = mView.findViewById(R.id.rImageView);
+    public void setDetails(Context ctx, String title, String image, String location, String desctiption, String ustad, String masjid, String placeholder){
 
         //set data to view
         mTitleTv.setText(title);
-        mDescTV.setText(desctiption);
+        setDescription(desctiption);
         mUstadTV.setText(ustad);
         mMasjidTV.setText(masjid);
         mLocationTv.setText(location);
-        Picasso.get().load(image).into(mImageTv);
+        mImageBytes = 0;
+        ImageLoader.loadRow(mImageTv, image, placeholder(ctx, placeholder), new Callback() {
+            @Override
+            public void onSuccess() {
+                mImageBytes = ImageLoader.bytesOf(mImageTv);
+            }
+
+            @Override
+            public void onError(Exception e) {
+
+            }
+        });
+    }
+
+    //the blurred preview is decoded right here, it is small enough to not cost a frame
+    private static Drawable placeholder(Context ctx, String placeholder) {
+        Bitmap bitmap = BlurHash.decode(placeholder);
+        return bitmap == null ? null : new BitmapDrawable(ctx.getResources(), bitmap);
+    }
+
+    //called when the row is recycled, so its image does not hold up the rows on screen
+    public void cancelImage() {
+        ImageLoader.cancelRow(mImageTv);
+    }
+
+    //the decoded image of the row, or null while the blurred placeholder is still shown
+    public Bitmap getImageBitmap() {
+        Drawable drawable = mImageTv.getDrawable();
+        if (mImageBytes > 0 && drawable instanceof BitmapDrawable) {
+            return ((BitmapDrawable) drawable).getBitmap();
+        }
+        return null;
+    }
+
+    //the description is long, so its layout is measured on a background thread;
+    //setTextFuture waits for it only when the row is measured
+    private void setDescription(String description) {
+        if (description != null && mDescTV instanceof AppCompatTextView) {
+            PrecomputedTextCompat.Params params = TextViewCompat.getTextMetricsParams(mDescTV);
+            ((AppCompatTextView) mDescTV).setTextFuture(PrecomputedTextCompat.getTextFuture(description, params, null));
+        } else {
+            mDescTV.setText(description);
+        }
     }
 
     private ViewHolder.ClickListener mClickListener;
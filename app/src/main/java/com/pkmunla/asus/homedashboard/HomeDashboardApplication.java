@@ -0,0 +1,16 @@
+package com.pkmunla.asus.homedashboard;
+
+import android.app.Application;
+
+import com.pkmunla.asus.homedashboard.Image.ImageCache;
+
+public class HomeDashboardApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        //one image cache for every screen
+        ImageCache.install(this);
+    }
+}
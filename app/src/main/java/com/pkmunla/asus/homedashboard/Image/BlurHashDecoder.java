@@ -0,0 +1,141 @@
+package com.pkmunla.asus.homedashboard.Image;
+
+//the blurhash math without android classes, so it can be checked and timed on the jvm
+final class BlurHashDecoder {
+
+    private static final String CHARS =
+            "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz#$%*+,-.:;=?@[]^_{|}~";
+
+    //steps of the linear to srgb table; the curve is steepest near black, where one step
+    //is still less than one output level
+    private static final int LINEAR_STEPS = 4096;
+
+    private static final float[] sSrgbToLinear = new float[256];
+    private static final byte[] sLinearToSrgb = new byte[LINEAR_STEPS];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            float v = i / 255f;
+            sSrgbToLinear[i] = v <= 0.04045f ? v / 12.92f : (float) Math.pow((v + 0.055f) / 1.055f, 2.4f);
+        }
+        //a pow per channel of every pixel cost more than the rest of the decode
+        for (int i = 0; i < LINEAR_STEPS; i++) {
+            sLinearToSrgb[i] = (byte) linearToSrgbExact(i / (float) (LINEAR_STEPS - 1));
+        }
+    }
+
+    private BlurHashDecoder() {
+    }
+
+    static int[] decodePixels(String hash, int width, int height) {
+        int sizeFlag = decode83(hash, 0, 1);
+        if (sizeFlag < 0) {
+            return null;
+        }
+        int numX = sizeFlag % 9 + 1;
+        int numY = sizeFlag / 9 + 1;
+        if (hash.length() != 4 + 2 * numX * numY) {
+            return null;
+        }
+        int quantisedMax = decode83(hash, 1, 2);
+        int dc = decode83(hash, 2, 6);
+        if (quantisedMax < 0 || dc < 0) {
+            return null;
+        }
+        float maxValue = (quantisedMax + 1) / 166f;
+
+        //linear rgb of every component, the first one is the average color
+        float[] colors = new float[numX * numY * 3];
+        colors[0] = sSrgbToLinear[dc >> 16];
+        colors[1] = sSrgbToLinear[(dc >> 8) & 255];
+        colors[2] = sSrgbToLinear[dc & 255];
+        for (int i = 1; i < numX * numY; i++) {
+            int value = decode83(hash, 4 + i * 2, 6 + i * 2);
+            if (value < 0) {
+                return null;
+            }
+            colors[i * 3] = signedSquare((value / (19 * 19) - 9) / 9f) * maxValue;
+            colors[i * 3 + 1] = signedSquare((value / 19 % 19 - 9) / 9f) * maxValue;
+            colors[i * 3 + 2] = signedSquare((value % 19 - 9) / 9f) * maxValue;
+        }
+
+        //the cosines only depend on one axis each, so they are computed once per column and row
+        float[] cosX = new float[width * numX];
+        for (int x = 0; x < width; x++) {
+            for (int i = 0; i < numX; i++) {
+                cosX[x * numX + i] = (float) Math.cos(Math.PI * x * i / width);
+            }
+        }
+        float[] cosY = new float[height * numY];
+        for (int y = 0; y < height; y++) {
+            for (int j = 0; j < numY; j++) {
+                cosY[y * numY + j] = (float) Math.cos(Math.PI * y * j / height);
+            }
+        }
+
+        int[] pixels = new int[width * height];
+        //the basis is a product of one cosine per axis, so each row first sums its components down
+        //to one color per column frequency, and each pixel then only sums numX of them
+        float[] rowColors = new float[numX * 3];
+        for (int y = 0; y < height; y++) {
+            for (int i = 0; i < numX; i++) {
+                float r = 0;
+                float g = 0;
+                float b = 0;
+                for (int j = 0; j < numY; j++) {
+                    float cy = cosY[y * numY + j];
+                    int c = (j * numX + i) * 3;
+                    r += colors[c] * cy;
+                    g += colors[c + 1] * cy;
+                    b += colors[c + 2] * cy;
+                }
+                rowColors[i * 3] = r;
+                rowColors[i * 3 + 1] = g;
+                rowColors[i * 3 + 2] = b;
+            }
+            for (int x = 0; x < width; x++) {
+                float r = 0;
+                float g = 0;
+                float b = 0;
+                for (int i = 0; i < numX; i++) {
+                    float cx = cosX[x * numX + i];
+                    r += rowColors[i * 3] * cx;
+                    g += rowColors[i * 3 + 1] * cx;
+                    b += rowColors[i * 3 + 2] * cx;
+                }
+                pixels[y * width + x] = 0xff000000 | linearToSrgb(r) << 16 | linearToSrgb(g) << 8 | linearToSrgb(b);
+            }
+        }
+        return pixels;
+    }
+
+    private static int decode83(String hash, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = CHARS.indexOf(hash.charAt(i));
+            if (digit < 0) {
+                return -1;
+            }
+            value = value * 83 + digit;
+        }
+        return value;
+    }
+
+    private static float signedSquare(float value) {
+        return Math.copySign(value * value, value);
+    }
+
+    static int linearToSrgb(float value) {
+        float v = Math.max(0f, Math.min(1f, value));
+        return sLinearToSrgb[(int) (v * (LINEAR_STEPS - 1) + 0.5f)] & 255;
+    }
+
+    //the exact curve, for the table and to check it against
+    static int linearToSrgbExact(float value) {
+        float v = Math.max(0f, Math.min(1f, value));
+        if (v <= 0.0031308f) {
+            return (int) (v * 12.92f * 255 + 0.5f);
+        }
+        return (int) ((1.055f * (float) Math.pow(v, 1 / 2.4f) - 0.055f) * 255 + 0.5f);
+    }
+}
@@ -0,0 +1,155 @@
+package com.pkmunla.asus.homedashboard.Image;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.StatFs;
+import android.util.LruCache;
+
+import androidx.core.graphics.BitmapCompat;
+
+import com.squareup.picasso.Cache;
+import com.squareup.picasso.OkHttp3Downloader;
+import com.squareup.picasso.Picasso;
+
+import java.io.File;
+import java.io.IOException;
+
+import okhttp3.OkHttpClient;
+
+//the app's image cache: decoded bitmaps in memory, downloaded files on disk;
+//every Picasso.get() in the app goes through it once install() has run
+public class ImageCache implements Cache {
+
+    private static final int MIN_DISK_BYTES = 5 * 1024 * 1024;
+    private static final int MAX_DISK_BYTES = 50 * 1024 * 1024;
+
+    private static ImageCache sInstance;
+
+    //called once from the application, before any screen loads an image
+    public static void install(Context context) {
+        context = context.getApplicationContext();
+        sInstance = new ImageCache(context);
+        OkHttpClient client = new OkHttpClient.Builder().cache(sInstance.mDisk).build();
+        Picasso picasso = new Picasso.Builder(context)
+                .memoryCache(sInstance)
+                .downloader(new OkHttp3Downloader(client))
+                .executor(ImageScheduler.newExecutor())
+                .build();
+        Picasso.setSingletonInstance(picasso);
+    }
+
+    public static ImageCache get() {
+        return sInstance;
+    }
+
+    //memory tier
+    private final LruCache<String, Bitmap> mMemory;
+    private int mMemoryHits;
+    private int mMemoryMisses;
+    private int mMemoryEvictions;
+
+    //disk tier, http responses kept by okhttp
+    private final okhttp3.Cache mDisk;
+
+    private ImageCache(Context context) {
+        //about 1/7 of what the device gives each app, like picasso's default
+        ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int memoryBytes = (int) (1024L * 1024L * am.getMemoryClass() / 7);
+        mMemory = new LruCache<String, Bitmap>(memoryBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return BitmapCompat.getAllocationByteCount(value);
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+                if (evicted) {
+                    mMemoryEvictions++;
+                }
+            }
+        };
+
+        File directory = new File(context.getCacheDir(), "images");
+        mDisk = new okhttp3.Cache(directory, diskBytes(context.getCacheDir()));
+    }
+
+    //2% of the free space, between 5 and 50 MB
+    private static long diskBytes(File directory) {
+        long size = MIN_DISK_BYTES;
+        try {
+            StatFs statFs = new StatFs(directory.getAbsolutePath());
+            size = statFs.getAvailableBytes() / 50;
+        } catch (IllegalArgumentException ignored) {
+        }
+        return Math.max(Math.min(size, MAX_DISK_BYTES), MIN_DISK_BYTES);
+    }
+
+    @Override
+    public synchronized Bitmap get(String key) {
+        Bitmap bitmap = mMemory.get(key);
+        if (bitmap != null) {
+            mMemoryHits++;
+        } else {
+            mMemoryMisses++;
+        }
+        return bitmap;
+    }
+
+    //like get(), but not counted in the stats; for deciding whether a request needs a thread at all
+    public synchronized boolean contains(String key) {
+        return mMemory.get(key) != null;
+    }
+
+    @Override
+    public synchronized void set(String key, Bitmap bitmap) {
+        mMemory.put(key, bitmap);
+    }
+
+    @Override
+    public synchronized int size() {
+        return mMemory.size();
+    }
+
+    @Override
+    public synchronized int maxSize() {
+        return mMemory.maxSize();
+    }
+
+    @Override
+    public synchronized void clear() {
+        mMemory.evictAll();
+    }
+
+    //picasso keys are the uri, a newline, then the request options
+    @Override
+    public synchronized void clearKeyUri(String keyPrefix) {
+        for (String key : mMemory.snapshot().keySet()) {
+            if (key.startsWith(keyPrefix) && key.indexOf('\n') == keyPrefix.length()) {
+                mMemory.remove(key);
+            }
+        }
+    }
+
+    //counters per tier; okhttp trims its journal on its own and does not report evictions,
+    //so the disk tier shows its writes and its size against the budget instead
+    public String stats() {
+        //the first size() opens the disk cache and reads its journal, which must not hold up
+        //picasso's get() on the main thread, so the disk tier is read outside the lock
+        long diskBytes;
+        try {
+            diskBytes = mDisk.size();
+        } catch (IOException e) {
+            diskBytes = -1;
+        }
+        String disk = "; disk hits=" + mDisk.hitCount() + " misses=" + mDisk.networkCount()
+                + " writes=" + mDisk.writeSuccessCount()
+                + " bytes=" + diskBytes + "/" + mDisk.maxSize();
+        synchronized (this) {
+            return "memory hits=" + mMemoryHits + " misses=" + mMemoryMisses
+                    + " evictions=" + mMemoryEvictions
+                    + " bytes=" + mMemory.size() + "/" + mMemory.maxSize()
+                    + disk;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.pkmunla.asus.homedashboard.Image;
+
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.widget.ImageView;
+
+import androidx.annotation.Nullable;
+
+import androidx.core.graphics.BitmapCompat;
+
+import com.squareup.picasso.Callback;
+import com.squareup.picasso.Picasso;
+import com.squareup.picasso.RequestCreator;
+
+//loads list images at the size of their view instead of the full poster resolution
+public class ImageLoader {
+
+    private static long sLoadedBytes;
+    private static int sLoaded;
+
+    private ImageLoader() {
+    }
+
+    //fit() waits for the view to be measured, then picasso decodes with the largest
+    //inSampleSize that still covers the view and scales the rest, like ThumbnailUtils.computeSampleSize
+    //the placeholder is shown until the image is there, null leaves the view empty
+    public static void loadRow(final ImageView target, String url, @Nullable Drawable placeholder, final Callback callback) {
+        RequestCreator request = Picasso.get()
+                .load(url)
+                .fit()
+                .centerCrop();
+        if (placeholder != null) {
+            request.placeholder(placeholder);
+        }
+        ImageScheduler.get().load(target, url, request, placeholder, new Callback() {
+            @Override
+            public void onSuccess() {
+                sLoaded++;
+                sLoadedBytes += bytesOf(target);
+                if (callback != null) {
+                    callback.onSuccess();
+                }
+            }
+
+            @Override
+            public void onError(Exception e) {
+                if (callback != null) {
+                    callback.onError(e);
+                }
+            }
+        });
+    }
+
+    //the row was recycled, its image is not needed any more
+    public static void cancelRow(ImageView target) {
+        ImageScheduler.get().cancel(target);
+    }
+
+    //bytes of the bitmap shown in the view, 0 when there is none
+    public static int bytesOf(ImageView view) {
+        Drawable drawable = view.getDrawable();
+        if (!(drawable instanceof BitmapDrawable)) {
+            return 0;
+        }
+        Bitmap bitmap = ((BitmapDrawable) drawable).getBitmap();
+        return bitmap == null ? 0 : BitmapCompat.getAllocationByteCount(bitmap);
+    }
+
+    public static String stats() {
+        return "loaded=" + sLoaded + " bytes=" + sLoadedBytes
+                + " average=" + (sLoaded == 0 ? 0 : sLoadedBytes / sLoaded);
+    }
+}
@@ -0,0 +1,171 @@
+package com.pkmunla.asus.homedashboard.Image;
+
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.pkmunla.asus.homedashboard.Holder.ModelAdapter;
+import com.pkmunla.asus.homedashboard.R;
+import com.squareup.picasso.Callback;
+import com.squareup.picasso.Picasso;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+//warms the image cache for the rows about to scroll in, so cards are not blank while flinging
+public class ImagePrefetcher extends RecyclerView.OnScrollListener {
+
+    //rows ahead when scrolling slowly, and at most when flinging
+    private static final int MIN_ROWS = 2;
+    private static final int MAX_ROWS = 10;
+    //how far ahead the velocity is projected, in frames
+    private static final int LOOKAHEAD_FRAMES = 30;
+
+    private final ModelAdapter mAdapter;
+    //prefetches queued or running may not hold more than this, so they cannot push the rows
+    //on screen out of the memory tier
+    private final long mByteBudget;
+
+    private int mFrom = RecyclerView.NO_POSITION;
+    private int mTo = RecyclerView.NO_POSITION;
+    //positions of the current range already handed to the scheduler, and their request key
+    private final Map<Integer, String> mRequested = new HashMap<>();
+    //requests queued or running, and the bytes each is charged until it completes
+    private final Map<String, Long> mLive = new HashMap<>();
+    private long mBytes;
+    private int mWidth;
+    private int mHeight;
+
+    public ImagePrefetcher(ModelAdapter adapter) {
+        mAdapter = adapter;
+        ImageCache cache = ImageCache.get();
+        mByteBudget = cache == null ? 0 : cache.maxSize() / 4;
+    }
+
+    @Override
+    public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+        if (dy == 0) {
+            return;
+        }
+        LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+        int first = layoutManager.findFirstVisibleItemPosition();
+        int last = layoutManager.findLastVisibleItemPosition();
+        View child = layoutManager.findViewByPosition(last);
+        if (first == RecyclerView.NO_POSITION || child == null) {
+            return;
+        }
+
+        //prefetch at the size the rows load at, so the row finds it under the same cache key
+        View image = child.findViewById(R.id.rImageView);
+        if (image == null || image.getWidth() == 0 || image.getHeight() == 0) {
+            return;
+        }
+        mWidth = image.getWidth();
+        mHeight = image.getHeight();
+
+        //faster scrolling looks further ahead
+        float rowsPerFrame = Math.abs(dy) / (float) Math.max(child.getHeight(), 1);
+        int rows = Math.round(rowsPerFrame * LOOKAHEAD_FRAMES);
+        rows = Math.max(MIN_ROWS, Math.min(MAX_ROWS, rows));
+
+        int from;
+        int to;
+        if (dy > 0) {
+            from = last + 1;
+            to = Math.min(last + rows, mAdapter.getItemCount() - 1);
+        } else {
+            from = Math.max(first - rows, 0);
+            to = first - 1;
+        }
+        setRange(from, to, dy > 0);
+    }
+
+    private void setRange(int from, int to, boolean down) {
+        if (from == mFrom && to == mTo) {
+            return;
+        }
+        boolean overlaps = from <= mTo && to >= mFrom;
+        if (!overlaps) {
+            //the old range is out of reach now, stop spending on it
+            cancel();
+        } else {
+            //rows the list moved past: drop what has not started, running ones finish
+            List<String> dropped = new ArrayList<>();
+            Iterator<Map.Entry<Integer, String>> it = mRequested.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Integer, String> entry = it.next();
+                if (entry.getKey() < from || entry.getKey() > to) {
+                    it.remove();
+                    dropped.add(entry.getValue());
+                }
+            }
+            for (String key : dropped) {
+                //another row still in range may show the same image
+                if (!mRequested.containsValue(key) && ImageScheduler.get().cancelPrefetch(key)) {
+                    release(key);
+                }
+            }
+        }
+        mFrom = from;
+        mTo = to;
+
+        //nearest rows first; the scheduler runs them when no row on screen waits
+        long cost = 4L * mWidth * mHeight;
+        for (int i = 0; i <= to - from; i++) {
+            int position = down ? from + i : to - i;
+            if (position < 0 || position >= mAdapter.getItemCount() || mRequested.containsKey(position)) {
+                continue;
+            }
+            String url = mAdapter.getItem(position).getImage();
+            if (url == null || url.isEmpty()) {
+                continue;
+            }
+            final String key = ImageScheduler.key(url, mWidth, mHeight);
+            if (!mLive.containsKey(key)) {
+                if (mBytes + cost > mByteBudget) {
+                    //tried again when the range moves, once earlier ones completed
+                    break;
+                }
+                mLive.put(key, cost);
+                mBytes += cost;
+                ImageScheduler.get().prefetch(key, Picasso.get()
+                        .load(url)
+                        .resize(mWidth, mHeight)
+                        .centerCrop(), new Callback() {
+                    @Override
+                    public void onSuccess() {
+                        release(key);
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        release(key);
+                    }
+                });
+            }
+            mRequested.put(position, key);
+        }
+    }
+
+    private void release(String key) {
+        Long cost = mLive.remove(key);
+        if (cost != null) {
+            mBytes -= cost;
+        }
+    }
+
+    //drop every prefetch not started or still running
+    public void cancel() {
+        ImageScheduler.get().cancelPrefetches();
+        mRequested.clear();
+        mLive.clear();
+        mBytes = 0;
+        mFrom = RecyclerView.NO_POSITION;
+        mTo = RecyclerView.NO_POSITION;
+    }
+}
@@ -0,0 +1,320 @@
+package com.pkmunla.asus.homedashboard.Image;
+
+import android.graphics.drawable.Drawable;
+import android.os.Process;
+import android.os.SystemClock;
+import android.view.Gravity;
+import android.widget.ImageView;
+
+import com.squareup.picasso.Callback;
+import com.squareup.picasso.Picasso;
+import com.squareup.picasso.RequestCreator;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+//decides which image requests picasso gets to work on: rows on screen before prefetches, no more
+//at once than there are cores, nothing for rows that were recycled before their turn, and one
+//request for rows showing the same image at the same size; main thread only
+public class ImageScheduler {
+
+    private static final Object PREFETCH_TAG = "prefetch";
+
+    //one download and decode per core, more only makes them wait for each other
+    static final int MAX_PARALLEL = Runtime.getRuntime().availableProcessors();
+
+    private static ImageScheduler sInstance;
+
+    public static ImageScheduler get() {
+        if (sInstance == null) {
+            sInstance = new ImageScheduler();
+        }
+        return sInstance;
+    }
+
+    //picasso's threads; the queue is plain fifo since the order is decided here
+    static ExecutorService newExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_PARALLEL, MAX_PARALLEL, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(final Runnable runnable) {
+                        return new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                                runnable.run();
+                            }
+                        }, "image");
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private final ArrayDeque<Job> mVisible = new ArrayDeque<>();
+    private final ArrayDeque<Job> mPrefetches = new ArrayDeque<>();
+    //the job of each row image view, queued or running
+    private final Map<ImageView, Job> mTargets = new WeakHashMap<>();
+    private final Set<Job> mRunningPrefetches = new HashSet<>();
+    //the running job of each url and size, later requests for it wait for that one
+    private final Map<String, Job> mLeaders = new HashMap<>();
+    private int mRunning;
+
+    private int mCancelled;
+    private int mDeduplicated;
+    private int mShown;
+    private long mShownMillis;
+    private long mMaxShownMillis;
+
+    private ImageScheduler() {
+    }
+
+    //what makes two requests the same image: the url and the size it is decoded at
+    static String key(String url, int width, int height) {
+        return url + '\n' + width + 'x' + height;
+    }
+
+    //the key picasso keeps a fit().centerCrop() result under in the memory cache
+    private static String memoryKey(String url, int width, int height) {
+        return url + "\nresize:" + width + 'x' + height + "\ncenterCrop:" + Gravity.CENTER + '\n';
+    }
+
+    //load into a row image view; replaces whatever the view was waiting for
+    public void load(ImageView target, String url, RequestCreator request, Drawable placeholder, Callback callback) {
+        cancel(target);
+        //fit() decodes at the size of the view, unknown until it has been laid out once
+        String key = target.getWidth() > 0 && target.getHeight() > 0
+                ? key(url, target.getWidth(), target.getHeight())
+                : null;
+        Job job = new Job(request.priority(Picasso.Priority.HIGH), key, target, placeholder, callback);
+        //a view not measured yet waits for its layout inside picasso and a decoded image is set
+        //right away; neither keeps a thread busy, so they do not wait for a slot (the executor
+        //still runs no more than MAX_PARALLEL decodes once the view is measured)
+        ImageCache cache = ImageCache.get();
+        job.mCounted = key != null
+                && (cache == null || !cache.contains(memoryKey(url, target.getWidth(), target.getHeight())));
+        mTargets.put(target, job);
+        if (!job.mCounted || mRunning < MAX_PARALLEL) {
+            start(job);
+        } else {
+            //the view still shows the row it had before it was recycled
+            target.setImageDrawable(placeholder);
+            mVisible.add(job);
+        }
+    }
+
+    //warm the cache; runs only when no row on screen is waiting. callback is told when the
+    //prefetch is done with, also when it was dropped as a duplicate, but not when cancelled
+    public void prefetch(String key, RequestCreator request, Callback callback) {
+        Job job = new Job(request.priority(Picasso.Priority.LOW).tag(PREFETCH_TAG), key, null, null, callback);
+        mPrefetches.add(job);
+        next();
+    }
+
+    //drop the prefetch for key if it has not started; false when there is none waiting
+    public boolean cancelPrefetch(String key) {
+        Iterator<Job> it = mPrefetches.iterator();
+        while (it.hasNext()) {
+            Job job = it.next();
+            if (job.mKey.equals(key)) {
+                it.remove();
+                job.mDone = true;
+                mCancelled++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //the row went off screen or is bound to another item
+    public void cancel(ImageView target) {
+        Job job = mTargets.remove(target);
+        if (job == null || job.mDone) {
+            return;
+        }
+        job.mDone = true;
+        mCancelled++;
+        if (job.mLeader != null) {
+            job.mLeader.mFollowers.remove(job);
+            job.mLeader = null;
+        } else if (job.mStarted) {
+            Picasso.get().cancelRequest(target);
+            if (job.mCounted) {
+                mRunning--;
+            }
+            release(job);
+            next();
+        } else {
+            mVisible.remove(job);
+        }
+    }
+
+    public void cancelPrefetches() {
+        mCancelled += mPrefetches.size() + mRunningPrefetches.size();
+        for (Job job : mPrefetches) {
+            job.mDone = true;
+        }
+        mPrefetches.clear();
+        if (!mRunningPrefetches.isEmpty()) {
+            Picasso.get().cancelTag(PREFETCH_TAG);
+            for (Job job : mRunningPrefetches) {
+                job.mDone = true;
+                release(job);
+            }
+            mRunning -= mRunningPrefetches.size();
+            mRunningPrefetches.clear();
+        }
+        next();
+    }
+
+    private void next() {
+        while (mRunning < MAX_PARALLEL) {
+            Job job = mVisible.poll();
+            if (job == null) {
+                job = mPrefetches.poll();
+            }
+            if (job == null) {
+                return;
+            }
+            start(job);
+        }
+    }
+
+    private void start(Job job) {
+        if (job.mKey != null) {
+            Job leader = mLeaders.get(job.mKey);
+            if (leader != null) {
+                //the same image is already being fetched and decoded, one request serves both
+                mDeduplicated++;
+                if (job.mTarget == null) {
+                    job.mDone = true;
+                    if (job.mCallback != null) {
+                        job.mCallback.onSuccess();
+                    }
+                } else {
+                    job.mLeader = leader;
+                    leader.mFollowers.add(job);
+                    job.mTarget.setImageDrawable(job.mPlaceholder);
+                }
+                return;
+            }
+            mLeaders.put(job.mKey, job);
+        }
+        job.mStarted = true;
+        if (job.mCounted) {
+            mRunning++;
+        }
+        if (job.mTarget != null) {
+            job.mRequest.into(job.mTarget, job);
+        } else {
+            mRunningPrefetches.add(job);
+            job.mRequest.fetch(job);
+        }
+    }
+
+    private void finish(Job job, boolean shown) {
+        job.mDone = true;
+        if (job.mCounted) {
+            mRunning--;
+        }
+        if (job.mTarget != null) {
+            if (mTargets.get(job.mTarget) == job) {
+                mTargets.remove(job.mTarget);
+            }
+            if (shown) {
+                long millis = SystemClock.uptimeMillis() - job.mQueued;
+                mShown++;
+                mShownMillis += millis;
+                mMaxShownMillis = Math.max(mMaxShownMillis, millis);
+            }
+        } else {
+            mRunningPrefetches.remove(job);
+        }
+        release(job);
+        next();
+    }
+
+    //rows waiting for job go first in the queue; after a success picasso finds the image
+    //in the memory cache and sets it right away, otherwise the first of them fetches again
+    private void release(Job job) {
+        if (job.mKey != null && mLeaders.get(job.mKey) == job) {
+            mLeaders.remove(job.mKey);
+        }
+        for (int i = job.mFollowers.size() - 1; i >= 0; i--) {
+            Job follower = job.mFollowers.get(i);
+            follower.mLeader = null;
+            mVisible.addFirst(follower);
+        }
+        job.mFollowers.clear();
+    }
+
+    //time to image counts from bind to the bitmap in the view, including the wait in the queue
+    public String stats() {
+        return "running=" + mRunning + "/" + MAX_PARALLEL
+                + " queued=" + mVisible.size() + "+" + mPrefetches.size()
+                + " cancelled=" + mCancelled
+                + " deduplicated=" + mDeduplicated
+                + " timeToImage=" + (mShown == 0 ? 0 : mShownMillis / mShown) + " ms"
+                + " max=" + mMaxShownMillis + " ms";
+    }
+
+    private class Job implements Callback {
+        final RequestCreator mRequest;
+        final String mKey;
+        final ImageView mTarget;
+        final Drawable mPlaceholder;
+        final Callback mCallback;
+        final long mQueued = SystemClock.uptimeMillis();
+        //takes one of the MAX_PARALLEL slots while it runs; prefetches always do
+        boolean mCounted = true;
+        boolean mStarted;
+        boolean mDone;
+
+        //the job this one waits for, and the rows waiting for this one
+        Job mLeader;
+        final List<Job> mFollowers = new ArrayList<>(0);
+
+        Job(RequestCreator request, String key, ImageView target, Drawable placeholder, Callback callback) {
+            mRequest = request;
+            mKey = key;
+            mTarget = target;
+            mPlaceholder = placeholder;
+            mCallback = callback;
+        }
+
+        //picasso does not call back for cancelled requests, mDone only guards the counts
+        @Override
+        public void onSuccess() {
+            if (mDone) {
+                return;
+            }
+            finish(this, true);
+            if (mCallback != null) {
+                mCallback.onSuccess();
+            }
+        }
+
+        @Override
+        public void onError(Exception e) {
+            if (mDone) {
+                return;
+            }
+            finish(this, false);
+            if (mCallback != null) {
+                mCallback.onError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.pkmunla.asus.homedashboard.Image;
+
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+import androidx.core.graphics.BitmapCompat;
+
+//bitmaps already on screen, keyed by image url, so a detail screen gets the decoded
+//image from the row instead of PNG bytes in its Intent
+public class ImageStore {
+
+    //a few screens worth of images is enough for handing them over
+    private static final LruCache<String, Bitmap> sBitmaps =
+            new LruCache<String, Bitmap>((int) (Runtime.getRuntime().maxMemory() / 32)) {
+                @Override
+                protected int sizeOf(String key, Bitmap value) {
+                    return BitmapCompat.getAllocationByteCount(value);
+                }
+            };
+
+    private ImageStore() {
+    }
+
+    public static void put(String url, Bitmap bitmap) {
+        if (url != null && bitmap != null) {
+            sBitmaps.put(url, bitmap);
+        }
+    }
+
+    //null when the image is not in memory any more, e.g. after the process was restarted
+    public static Bitmap get(String url) {
+        return url == null ? null : sBitmaps.get(url);
+    }
+}
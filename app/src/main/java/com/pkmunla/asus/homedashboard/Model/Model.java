@@ -1,58 +1,77 @@
 package com.pkmunla.asus.homedashboard.Model;
 
+import androidx.core.util.ObjectsCompat;
+
+//one child of the "Data" node; immutable, built by ModelParser or from the local store
 public class Model {
 
-    String title, description, location, ustad, image, masjid;
+    private final String title, description, image;
 
-    public String getMasjid() {
-        return masjid;
-    }
+    //blurhash of the image, drawn while the image itself loads; null when the row has none
+    private final String placeholder;
 
-    public void setMasjid(String masjid) {
-        this.masjid = masjid;
-    }
+    //few distinct values repeated over many rows, kept as codes into StringPool
+    private final int location, ustad, masjid;
 
-    public Model(){
+    public Model(String title, String description, String location, String ustad, String image, String masjid, String placeholder) {
+        this.title = title;
+        this.description = description;
+        this.location = StringPool.code(location);
+        this.ustad = StringPool.code(ustad);
+        this.image = image;
+        this.masjid = StringPool.code(masjid);
+        this.placeholder = placeholder;
+    }
 
+    public String getMasjid() {
+        return StringPool.value(masjid);
     }
 
     public String getTitle() {
         return title;
     }
 
-    public void setTitle(String title) {
-        this.title = title;
-    }
-
     public String getDescription() {
         return description;
     }
 
-    public void setDescription(String description) {
-        this.description = description;
-    }
-
     public String getLocation() {
-        return location;
+        return StringPool.value(location);
     }
 
-    public void setLocation(String location) {
-        this.location = location;
+    public String getUstad() {
+        return StringPool.value(ustad);
     }
 
-    public String getUstad() {
-        return ustad;
+    public String getImage() {
+        return image;
     }
 
-    public void setUstad(String ustad) {
-        this.ustad = ustad;
+    public String getPlaceholder() {
+        return placeholder;
     }
 
-    public String getImage() {
-        return image;
+    //same content, used by the list to skip rows that did not change
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Model)) {
+            return false;
+        }
+        Model model = (Model) o;
+        return location == model.location
+                && ustad == model.ustad
+                && masjid == model.masjid
+                && ObjectsCompat.equals(title, model.title)
+                && ObjectsCompat.equals(description, model.description)
+                && ObjectsCompat.equals(image, model.image)
+                && ObjectsCompat.equals(placeholder, model.placeholder);
     }
 
-    public void setImage(String image) {
-        this.image = image;
+    @Override
+    public int hashCode() {
+        return ObjectsCompat.hash(title, description, location, ustad, image, masjid, placeholder);
     }
 }
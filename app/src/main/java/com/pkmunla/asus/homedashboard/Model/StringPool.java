@@ -0,0 +1,46 @@
+package com.pkmunla.asus.homedashboard.Model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//dictionary for the few distinct ustad, masjid and location values: each value is kept once
+//and a Model only holds its int code
+public class StringPool {
+
+    //code for a missing value
+    public static final int NONE = -1;
+
+    private static final Map<String, Integer> sCodes = new HashMap<>();
+    private static final List<String> sValues = new ArrayList<>();
+    private static long sPooledChars;
+
+    private StringPool() {
+    }
+
+    public static synchronized int code(String value) {
+        if (value == null) {
+            return NONE;
+        }
+        Integer code = sCodes.get(value);
+        if (code != null) {
+            return code;
+        }
+        code = sValues.size();
+        sValues.add(value);
+        sCodes.put(value, code);
+        sPooledChars += value.length();
+        return code;
+    }
+
+    public static synchronized String value(int code) {
+        return code == NONE ? null : sValues.get(code);
+    }
+
+    //what the pool itself holds; models parsed and thrown away again, like the ones equal to a row
+    //already kept, also ask for codes, so counting calls would not tell what the rows save
+    public static synchronized String stats() {
+        return "distinct=" + sValues.size() + " pooledChars=" + sPooledChars;
+    }
+}
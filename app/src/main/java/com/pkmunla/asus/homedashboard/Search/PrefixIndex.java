@@ -0,0 +1,74 @@
+package com.pkmunla.asus.homedashboard.Search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+//sorted index of one text field, answers "starts with" queries without going to firebase;
+//updated on the main thread and queried on the search thread, so every instance method locks
+public class PrefixIndex {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
+
+    //between the folded value and the key, sorts before any real character
+    private static final char SEPARATOR = '\0';
+
+    //entries are folded value + separator + key, so equal values stay apart
+    private final TreeSet<String> mEntries = new TreeSet<>();
+    private final Map<String, String> mValues = new HashMap<>();
+
+    //lower case without accents, so "Masjid" is found by "masj" and an accented letter by its plain one
+    static String fold(String text) {
+        if (text == null) {
+            return "";
+        }
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFD);
+        folded = MARKS.matcher(folded).replaceAll("");
+        return folded.toLowerCase(Locale.ROOT);
+    }
+
+    public synchronized void put(String key, String value) {
+        String folded = fold(value);
+        String old = mValues.put(key, folded);
+        if (old != null) {
+            if (old.equals(folded)) {
+                return;
+            }
+            mEntries.remove(old + SEPARATOR + key);
+        }
+        mEntries.add(folded + SEPARATOR + key);
+    }
+
+    public synchronized void remove(String key) {
+        String old = mValues.remove(key);
+        if (old != null) {
+            mEntries.remove(old + SEPARATOR + key);
+        }
+    }
+
+    public synchronized void clear() {
+        mEntries.clear();
+        mValues.clear();
+    }
+
+    public synchronized int size() {
+        return mValues.size();
+    }
+
+    //keys whose value starts with prefix, sorted by key like the list
+    public synchronized List<String> query(String prefix) {
+        String folded = fold(prefix);
+        List<String> keys = new ArrayList<>();
+        for (String entry : mEntries.subSet(folded, true, folded + Character.MAX_VALUE, true)) {
+            keys.add(entry.substring(entry.lastIndexOf(SEPARATOR) + 1));
+        }
+        Collections.sort(keys);
+        return keys;
+    }
+}
@@ -0,0 +1,154 @@
+package com.pkmunla.asus.homedashboard.Search;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.pkmunla.asus.homedashboard.Data.DataRepository;
+import com.pkmunla.asus.homedashboard.Holder.ModelAdapter;
+import com.pkmunla.asus.homedashboard.Model.Model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+//search as you type: waits for the typing to pause, drops old queries and filters into the same adapter
+public class SearchController {
+
+    private static final String TAG = "SearchController";
+
+    private static final long DEBOUNCE_MILLIS = 250;
+
+    //ranked search shows the best rows only, the rest are not worth sorting
+    private static final int MAX_RESULTS = 200;
+
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor();
+
+    //search words anywhere in the row instead of the start of one child
+    public static final String ALL_FIELDS = "all";
+
+    private final DataRepository mRepository;
+    private final ModelAdapter mAdapter;
+    private final String mField;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    private String mQuery = "";
+    //bumped for every query, so the answer of an older one is dropped
+    private int mGeneration;
+    private Future<?> mRunning;
+
+    //field is "location" to search the start of the place name, or ALL_FIELDS
+    public SearchController(DataRepository repository, ModelAdapter adapter, String field) {
+        mRepository = repository;
+        mAdapter = adapter;
+        mField = field;
+    }
+
+    //called on every keystroke
+    public void setQuery(String query) {
+        mQuery = query == null ? "" : query;
+        mHandler.removeCallbacks(mSearch);
+        mHandler.postDelayed(mSearch, DEBOUNCE_MILLIS);
+    }
+
+    //called on submit, no need to wait
+    public void submit(String query) {
+        mQuery = query == null ? "" : query;
+        mHandler.removeCallbacks(mSearch);
+        mSearch.run();
+    }
+
+    public void cancel() {
+        mHandler.removeCallbacks(mSearch);
+        mGeneration++;
+        if (mRunning != null) {
+            mRunning.cancel(true);
+            mRunning = null;
+        }
+    }
+
+    //a broad word or a short prefix takes tens of milliseconds on a phone, so the index is asked on
+    //the search thread and only the answer comes back to the main thread
+    private final Runnable mSearch = new Runnable() {
+        @Override
+        public void run() {
+            cancel();
+            if (mQuery.isEmpty()) {
+                mAdapter.setResults(null, mRepository.getKeys(), mRepository.getModels());
+                return;
+            }
+
+            final int generation = mGeneration;
+            final String query = mQuery;
+            final boolean ranked = ALL_FIELDS.equals(mField);
+            final TextIndex textIndex = mRepository.getTextIndex();
+            final PrefixIndex prefixIndex = mRepository.getLocationIndex();
+            mRunning = sExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    long start = SystemClock.elapsedRealtimeNanos();
+                    final List<String> keys = ranked ? textIndex.query(query, MAX_RESULTS) : prefixIndex.query(query);
+                    Log.d(TAG, keys.size() + " rows for \"" + query + "\" in "
+                            + (SystemClock.elapsedRealtimeNanos() - start) / 1000 + " us");
+                    mHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (generation != mGeneration) {
+                                //a newer query already started
+                                return;
+                            }
+                            mRunning = null;
+                            show(ranked ? new TextFilter(query) : new LocationFilter(query), keys);
+                        }
+                    });
+                }
+            });
+        }
+    };
+
+    //rows removed while the query ran are left out
+    private void show(ModelAdapter.Filter filter, List<String> keys) {
+        List<String> shownKeys = new ArrayList<>(keys.size());
+        List<Model> models = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            Model model = mRepository.getModel(key);
+            if (model != null) {
+                shownKeys.add(key);
+                models.add(model);
+            }
+        }
+        mAdapter.setResults(filter, shownKeys, models);
+    }
+
+    //the same match the index does, for rows that change while the search is shown
+    static class LocationFilter implements ModelAdapter.Filter {
+
+        private final String mPrefix;
+
+        LocationFilter(String prefix) {
+            mPrefix = PrefixIndex.fold(prefix);
+        }
+
+        @Override
+        public boolean matches(Model model) {
+            return PrefixIndex.fold(model.getLocation()).startsWith(mPrefix);
+        }
+    }
+
+    static class TextFilter implements ModelAdapter.Filter {
+
+        private final String mQuery;
+
+        TextFilter(String query) {
+            mQuery = query;
+        }
+
+        @Override
+        public boolean matches(Model model) {
+            return TextIndex.matches(model, mQuery);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.pkmunla.asus.homedashboard.Search;
+
+import com.pkmunla.asus.homedashboard.Model.Model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+//inverted index over every text field of Model, ranks rows by field weight and term frequency;
+//updated on the main thread and queried on the search thread, so every instance method locks
+public class TextIndex {
+
+    private static final Pattern SPLIT = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+
+    //a word in the title counts more than the same word in the description
+    private static final float TITLE_WEIGHT = 3f;
+    private static final float USTAD_WEIGHT = 2.5f;
+    private static final float MASJID_WEIGHT = 2f;
+    private static final float LOCATION_WEIGHT = 1.5f;
+    private static final float DESCRIPTION_WEIGHT = 1f;
+
+    //shorter words are only matched whole, a one letter prefix would touch most of the index
+    private static final int MIN_PREFIX_LENGTH = 2;
+
+    //term -> key -> weighted frequency of the term in that row
+    private final TreeMap<String, Map<String, Float>> mPostings = new TreeMap<>();
+    //key -> terms of that row, to take them out again on change or remove
+    private final Map<String, Set<String>> mTerms = new HashMap<>();
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        for (String token : SPLIT.split(PrefixIndex.fold(text))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    public synchronized void put(String key, Model model) {
+        remove(key);
+
+        Map<String, Float> weights = new HashMap<>();
+        add(weights, model.getTitle(), TITLE_WEIGHT);
+        add(weights, model.getUstad(), USTAD_WEIGHT);
+        add(weights, model.getMasjid(), MASJID_WEIGHT);
+        add(weights, model.getLocation(), LOCATION_WEIGHT);
+        add(weights, model.getDescription(), DESCRIPTION_WEIGHT);
+
+        for (Map.Entry<String, Float> entry : weights.entrySet()) {
+            Map<String, Float> postings = mPostings.get(entry.getKey());
+            if (postings == null) {
+                postings = new HashMap<>();
+                mPostings.put(entry.getKey(), postings);
+            }
+            postings.put(key, entry.getValue());
+        }
+        mTerms.put(key, weights.keySet());
+    }
+
+    private static void add(Map<String, Float> weights, String text, float weight) {
+        for (String token : tokenize(text)) {
+            Float old = weights.get(token);
+            weights.put(token, old == null ? weight : old + weight);
+        }
+    }
+
+    public synchronized void remove(String key) {
+        Set<String> terms = mTerms.remove(key);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            Map<String, Float> postings = mPostings.get(term);
+            postings.remove(key);
+            if (postings.isEmpty()) {
+                mPostings.remove(term);
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        mPostings.clear();
+        mTerms.clear();
+    }
+
+    //keys of the rows containing every word of the query, best match first;
+    //the last word may be unfinished, so it also matches as a prefix
+    public List<String> query(String text) {
+        return query(text, Integer.MAX_VALUE);
+    }
+
+    //the limit best matches only; a broad word matches most rows, and only the best few are worth sorting
+    public synchronized List<String> query(String text, int limit) {
+        List<String> tokens = tokenize(text);
+        if (tokens.isEmpty()) {
+            return new ArrayList<>();
+        }
+        boolean lastIsPrefix = !SPLIT.matcher(text.substring(text.length() - 1)).matches();
+
+        final Map<String, Float> scores = new HashMap<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            boolean prefix = lastIsPrefix && i == tokens.size() - 1 && token.length() >= MIN_PREFIX_LENGTH;
+            Map<String, Float> tokenScores = score(token, prefix);
+
+            if (i == 0) {
+                scores.putAll(tokenScores);
+            } else {
+                //every word has to match
+                scores.keySet().retainAll(tokenScores.keySet());
+                for (Map.Entry<String, Float> entry : scores.entrySet()) {
+                    entry.setValue(entry.getValue() + tokenScores.get(entry.getKey()));
+                }
+            }
+            if (scores.isEmpty()) {
+                break;
+            }
+        }
+
+        Comparator<String> ranking = new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                int compare = Float.compare(scores.get(b), scores.get(a));
+                return compare != 0 ? compare : a.compareTo(b);
+            }
+        };
+        if (scores.size() <= limit) {
+            List<String> keys = new ArrayList<>(scores.keySet());
+            Collections.sort(keys, ranking);
+            return keys;
+        }
+
+        //keep the best limit keys in a heap with the worst of them on top, then sort only those
+        PriorityQueue<String> best = new PriorityQueue<>(limit + 1, Collections.reverseOrder(ranking));
+        for (String key : scores.keySet()) {
+            best.add(key);
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+        List<String> keys = new ArrayList<>(best);
+        Collections.sort(keys, ranking);
+        return keys;
+    }
+
+    //score of one query word for every row it appears in
+    private Map<String, Float> score(String token, boolean prefix) {
+        SortedMap<String, Map<String, Float>> terms;
+        if (prefix) {
+            terms = mPostings.subMap(token, token + Character.MAX_VALUE);
+        } else {
+            terms = mPostings.subMap(token, token + '\0');
+        }
+
+        Map<String, Float> scores = new HashMap<>();
+        int rows = mTerms.size();
+        for (Map.Entry<String, Map<String, Float>> term : terms.entrySet()) {
+            Map<String, Float> postings = term.getValue();
+            //rare words say more about a row than common ones
+            double idf = Math.log(1.0 + (double) rows / postings.size());
+            //a whole word beats a word that only starts the same
+            double exact = term.getKey().length() == token.length() ? 1.0 : 0.7;
+            for (Map.Entry<String, Float> posting : postings.entrySet()) {
+                float score = (float) ((1.0 + Math.log(posting.getValue())) * idf * exact);
+                Float old = scores.get(posting.getKey());
+                if (old == null || old < score) {
+                    scores.put(posting.getKey(), score);
+                }
+            }
+        }
+        return scores;
+    }
+
+    //the same match query() does, for one row that changed while the search is shown
+    public static boolean matches(Model model, String text) {
+        List<String> tokens = tokenize(text);
+        if (tokens.isEmpty()) {
+            return false;
+        }
+        boolean lastIsPrefix = !SPLIT.matcher(text.substring(text.length() - 1)).matches();
+
+        Set<String> words = new HashSet<>();
+        words.addAll(tokenize(model.getTitle()));
+        words.addAll(tokenize(model.getUstad()));
+        words.addAll(tokenize(model.getMasjid()));
+        words.addAll(tokenize(model.getLocation()));
+        words.addAll(tokenize(model.getDescription()));
+
+        for (int i = 0; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            boolean prefix = lastIsPrefix && i == tokens.size() - 1 && token.length() >= MIN_PREFIX_LENGTH;
+            if (words.contains(token)) {
+                continue;
+            }
+            boolean found = false;
+            if (prefix) {
+                for (String word : words) {
+                    if (word.startsWith(token)) {
+                        found = true;
+                        break;
+                    }
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
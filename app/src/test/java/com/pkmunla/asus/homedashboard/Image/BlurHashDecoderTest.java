@@ -0,0 +1,53 @@
+package com.pkmunla.asus.homedashboard.Image;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BlurHashDecoderTest {
+
+    //the example from the blurhash readme, 4x3 components
+    private static final String HASH = "LEHV6nWB2yk8pyo0adR*.7kCMdnj";
+
+    @Test
+    public void decodesOpaquePixels() {
+        int[] pixels = BlurHashDecoder.decodePixels(HASH, 32, 32);
+
+        assertEquals(32 * 32, pixels.length);
+        for (int pixel : pixels) {
+            assertEquals(0xff, pixel >>> 24);
+        }
+    }
+
+    @Test
+    public void rejectsMalformedHashes() {
+        assertNull(BlurHashDecoder.decodePixels(HASH.substring(0, HASH.length() - 2), 32, 32));
+        assertNull(BlurHashDecoder.decodePixels("LEHV6nWB2yk8pyo0adR*.7kCMdn\"", 32, 32));
+    }
+
+    @Test
+    public void tableStaysWithinOneLevelOfTheCurve() {
+        for (int i = 0; i <= 100000; i++) {
+            float v = i / 100000f;
+            int difference = BlurHashDecoder.linearToSrgb(v) - BlurHashDecoder.linearToSrgbExact(v);
+            assertTrue(v + " is off by " + difference, Math.abs(difference) <= 1);
+        }
+        assertEquals(0, BlurHashDecoder.linearToSrgb(-0.5f));
+        assertEquals(255, BlurHashDecoder.linearToSrgb(1.5f));
+    }
+
+    //times a 32x32 decode after warming up, the number goes to the test output
+    @Test
+    public void benchmark() {
+        int decodes = 10000;
+        for (int i = 0; i < decodes; i++) {
+            BlurHashDecoder.decodePixels(HASH, 32, 32);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < decodes; i++) {
+            BlurHashDecoder.decodePixels(HASH, 32, 32);
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.println("32x32 from a 4x3 hash: " + elapsed / 1000 / decodes + " us per decode");
+    }
+}
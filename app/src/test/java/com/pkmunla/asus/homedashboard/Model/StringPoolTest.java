@@ -0,0 +1,105 @@
+package com.pkmunla.asus.homedashboard.Model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class StringPoolTest {
+
+    private static final int ROWS = 50000;
+
+    //a row as it was before the pool: every field its own String, like firebase hands them over
+    private static class PlainRow {
+        final String title, description, location, ustad, image, masjid, placeholder;
+
+        PlainRow(String title, String description, String location, String ustad, String image, String masjid, String placeholder) {
+            this.title = title;
+            this.description = description;
+            this.location = location;
+            this.ustad = ustad;
+            this.image = image;
+            this.masjid = masjid;
+            this.placeholder = placeholder;
+        }
+    }
+
+    @Test
+    public void equalValuesShareOneCode() {
+        int code = StringPool.code("Masjid Raya Bandung");
+
+        assertEquals(code, StringPool.code(new String("Masjid Raya Bandung")));
+        assertEquals("Masjid Raya Bandung", StringPool.value(code));
+        assertEquals(StringPool.NONE, StringPool.code(null));
+        assertNull(StringPool.value(StringPool.NONE));
+    }
+
+    @Test
+    public void modelKeepsItsValues() {
+        Model model = new Model("t", "d", "Bandung", "Ustadz Adi", "i", "Masjid Salman", null);
+
+        assertEquals("Bandung", model.getLocation());
+        assertEquals("Ustadz Adi", model.getUstad());
+        assertEquals("Masjid Salman", model.getMasjid());
+        assertEquals(model, new Model("t", "d", new String("Bandung"), "Ustadz Adi", "i", "Masjid Salman", null));
+    }
+
+    //retained heap of 50k rows with and without the pool, the numbers go to the test output
+    @Test
+    public void heapFor50kRows() {
+        List<Object> plain = new ArrayList<>(ROWS);
+        long before = usedHeap();
+        for (int i = 0; i < ROWS; i++) {
+            plain.add(new PlainRow(title(i), description(i), location(i), ustad(i), image(i), masjid(i), null));
+        }
+        long plainBytes = usedHeap() - before;
+        plain.clear();
+
+        List<Object> pooled = new ArrayList<>(ROWS);
+        before = usedHeap();
+        for (int i = 0; i < ROWS; i++) {
+            pooled.add(new Model(title(i), description(i), location(i), ustad(i), image(i), masjid(i), null));
+        }
+        long pooledBytes = usedHeap() - before;
+
+        System.out.println(ROWS + " rows: " + plainBytes / 1024 + " KB as strings, " + pooledBytes / 1024
+                + " KB pooled, " + StringPool.stats());
+        assertEquals(ROWS, pooled.size());
+        assertTrue(pooledBytes < plainBytes);
+    }
+
+    private static String title(int i) {
+        return "Kajian rutin " + i;
+    }
+
+    private static String description(int i) {
+        return "Pembahasan kitab bab " + i % 40;
+    }
+
+    //the repeated fields are built again for every row, as parsing makes new Strings
+    private static String location(int i) {
+        return "Kota Bandung, Jawa Barat " + i % 20;
+    }
+
+    private static String ustad(int i) {
+        return "Ustadz Abdul Somad Batubara " + i % 50;
+    }
+
+    private static String image(int i) {
+        return "https://firebasestorage.googleapis.com/v0/b/app/o/" + i + ".jpg";
+    }
+
+    private static String masjid(int i) {
+        return "Masjid Raya Al-Jabbar " + i % 100;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,84 @@
+package com.pkmunla.asus.homedashboard.Search;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PrefixIndexTest {
+
+    @Test
+    public void foldDropsCaseAndAccents() {
+        assertEquals("masjid", PrefixIndex.fold("MASJID"));
+        assertEquals("cafe", PrefixIndex.fold("Café"));
+        assertEquals("", PrefixIndex.fold(null));
+    }
+
+    @Test
+    public void queryMatchesFoldedPrefix() {
+        PrefixIndex index = new PrefixIndex();
+        index.put("b", "Masjid Agung");
+        index.put("a", "Musholla Al-Ikhlas");
+        index.put("c", "Masjid Raya");
+
+        assertEquals(Arrays.asList("b", "c"), index.query("masj"));
+        assertEquals(Arrays.asList("b", "c"), index.query("MÁSJID"));
+        assertEquals(Arrays.asList("a", "b", "c"), index.query("m"));
+        assertEquals(Collections.emptyList(), index.query("raya"));
+    }
+
+    @Test
+    public void queryKeepsEqualValuesApart() {
+        PrefixIndex index = new PrefixIndex();
+        index.put("2", "Bandung");
+        index.put("1", "Bandung");
+
+        assertEquals(Arrays.asList("1", "2"), index.query("band"));
+    }
+
+    @Test
+    public void putReplacesAndRemoveDrops() {
+        PrefixIndex index = new PrefixIndex();
+        index.put("a", "Jakarta");
+        index.put("a", "Bogor");
+        assertEquals(Collections.emptyList(), index.query("jak"));
+        assertEquals(Collections.singletonList("a"), index.query("bog"));
+        assertEquals(1, index.size());
+
+        index.remove("a");
+        assertEquals(Collections.emptyList(), index.query("bog"));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void benchmark() {
+        benchmark(10000);
+        benchmark(100000);
+    }
+
+    //builds an index of size rows and times a few prefix queries, the numbers go to the test output
+    private static void benchmark(int size) {
+        PrefixIndex index = new PrefixIndex();
+        long start = System.nanoTime();
+        for (int i = 0; i < size; i++) {
+            index.put(String.format("k%06d", i), "Masjid " + i);
+        }
+        long built = System.nanoTime();
+
+        List<String> keys = null;
+        int queries = 100;
+        for (int i = 0; i < queries; i++) {
+            keys = index.query("masjid " + (i % 10) + "0");
+        }
+        long queried = System.nanoTime();
+
+        assertEquals(size, index.size());
+        //"masjid 90" matches 90, 900..909 and 9000..9099, and 90000..90999 too at 100k
+        assertEquals(size == 10000 ? 111 : 1111, keys.size());
+        System.out.println(size + " rows: built in " + (built - start) / 1000000 + " ms, "
+                + (queried - built) / 1000 / queries + " us per query");
+    }
+}
@@ -0,0 +1,155 @@
+package com.pkmunla.asus.homedashboard.Search;
+
+import com.pkmunla.asus.homedashboard.Model.Model;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TextIndexTest {
+
+    private static Model model(String title, String description, String location, String ustad, String masjid) {
+        return new Model(title, description, location, ustad, "", masjid, null);
+    }
+
+    private static Map<String, Model> rows() {
+        Map<String, Model> rows = new HashMap<>();
+        rows.put("a", model("Kajian Tafsir", "Tafsir surat Al-Kahfi", "Bandung", "Ustadz Abdul Somad", "Masjid Agung"));
+        rows.put("b", model("Fiqih Shalat", "Bab tafsir dan fiqih", "Jakarta", "Ustadz Adi Hidayat", "Masjid Istiqlal"));
+        rows.put("c", model("Sirah Nabawiyah", "Kisah para sahabat", "Bogor", "Ustadz Khalid Basalamah", "Masjid Raya"));
+        rows.put("d", model("Tafsīr Juz Amma", "Kajian rutin", "Bandung", "Ustadz Hanan Attaki", "Masjid Salman"));
+        return rows;
+    }
+
+    private static TextIndex index(Map<String, Model> rows) {
+        TextIndex index = new TextIndex();
+        for (Map.Entry<String, Model> row : rows.entrySet()) {
+            index.put(row.getKey(), row.getValue());
+        }
+        return index;
+    }
+
+    @Test
+    public void tokenizeFoldsAndSplits() {
+        assertEquals(Arrays.asList("tafsir", "al", "kahfi"), TextIndex.tokenize("TAFSĪR  Al-Kahfi!"));
+        assertEquals(Collections.emptyList(), TextIndex.tokenize(" - "));
+    }
+
+    @Test
+    public void queryFoldsCaseAndAccents() {
+        TextIndex index = index(rows());
+
+        assertEquals(index.query("tafsir "), index.query("TAFSÎR "));
+        assertTrue(index.query("tafsir ").contains("d"));
+    }
+
+    @Test
+    public void lastWordMatchesAsPrefix() {
+        TextIndex index = index(rows());
+
+        assertEquals(Arrays.asList("c"), index.query("sira"));
+        //a finished word is only matched whole
+        assertEquals(Collections.emptyList(), index.query("sira "));
+        //a single letter is too short to match as a prefix
+        assertEquals(Collections.emptyList(), index.query("s"));
+        //only the last word may be unfinished
+        assertEquals(Collections.emptyList(), index.query("kaj tafsir"));
+    }
+
+    @Test
+    public void everyWordHasToMatch() {
+        TextIndex index = index(rows());
+
+        assertEquals(Arrays.asList("b"), index.query("tafsir jakarta"));
+        assertEquals(Collections.emptyList(), index.query("tafsir bogor"));
+    }
+
+    @Test
+    public void titleRanksAboveDescription() {
+        Map<String, Model> rows = new HashMap<>();
+        rows.put("a", model("Kajian rutin", "Tafsir", "", "", ""));
+        rows.put("b", model("Tafsir", "Kajian rutin", "", "", ""));
+
+        assertEquals(Arrays.asList("b", "a"), index(rows).query("tafsir"));
+    }
+
+    @Test
+    public void limitKeepsTheBestMatches() {
+        TextIndex index = index(rows());
+        List<String> all = index.query("ustadz");
+
+        assertEquals(4, all.size());
+        assertEquals(all.subList(0, 2), index.query("ustadz", 2));
+        assertEquals(all, index.query("ustadz", 10));
+    }
+
+    @Test
+    public void putReplacesAndRemoveDrops() {
+        TextIndex index = index(rows());
+
+        index.put("c", model("Kajian Hadits", "", "Bogor", "", ""));
+        assertEquals(Collections.emptyList(), index.query("sirah"));
+        assertEquals(Arrays.asList("c"), index.query("hadits"));
+
+        index.remove("c");
+        assertEquals(Collections.emptyList(), index.query("hadits"));
+    }
+
+    @Test
+    public void matchesAgreesWithQuery() {
+        Map<String, Model> rows = rows();
+        TextIndex index = index(rows);
+        String[] queries = {"tafsir", "tafsir ", "taf", "t", "kajian band", "ustadz", "masjid raya",
+                "fiqih tafsir", "al-kahfi", "TAFSĪR", "bandung kajian ", "nothing", " ", ""};
+
+        for (String query : queries) {
+            List<String> keys = index.query(query);
+            for (Map.Entry<String, Model> row : rows.entrySet()) {
+                assertEquals("\"" + query + "\" on " + row.getKey(),
+                        keys.contains(row.getKey()), TextIndex.matches(row.getValue(), query));
+            }
+        }
+    }
+
+    @Test
+    public void benchmark() {
+        benchmark(10000);
+        benchmark(100000);
+    }
+
+    //builds an index of size rows and times a few queries, the numbers go to the test output
+    private static void benchmark(int size) {
+        String[] words = {"tafsir", "fiqih", "sirah", "hadits", "akhlak", "aqidah", "tauhid", "adab"};
+        String[] places = {"Bandung", "Jakarta", "Bogor", "Depok", "Bekasi"};
+        TextIndex index = new TextIndex();
+        long start = System.nanoTime();
+        for (int i = 0; i < size; i++) {
+            index.put("k" + i, model("Kajian " + words[i % words.length] + " " + i,
+                    "Pembahasan " + words[(i / 8) % words.length], places[i % places.length],
+                    "Ustadz " + (i % 100), "Masjid " + (i % 500)));
+        }
+        long built = System.nanoTime();
+
+        List<String> keys = null;
+        int queries = 100;
+        for (int i = 0; i < queries; i++) {
+            keys = index.query("tafsir band");
+        }
+        long queried = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            keys = index.query("tafsir band", 200);
+        }
+        long limited = System.nanoTime();
+
+        assertEquals(200, keys.size());
+        System.out.println(size + " rows: built in " + (built - start) / 1000000 + " ms, "
+                + (queried - built) / 1000 / queries + " us per query, "
+                + (limited - queried) / 1000 / queries + " us for the best 200");
+    }
+}